@@ -0,0 +1,101 @@
+package BenchmarkPackage;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.CommandLine;
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+
+/**
+ * Whole inputs run through a command line session,
+ * from parsing the command to writing its output and prompt
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandLineBenchmarks {
+	public static final int TOP_FOLDERS = 16;
+	public static final int FANOUT = 16;
+
+	CommandLine session;
+	String[] paths;
+	int next;
+
+	/**
+	 * Create a session on a tree two folders deep,
+	 * each top folder holding a file
+	 */
+	@Setup
+	public void setup() {
+		FolderTreeNode root = new FolderTreeNode(new Folder("root"));
+		paths = new String[TOP_FOLDERS * FANOUT];
+		for(int i = 0; i < TOP_FOLDERS; i++) {
+			FolderTreeNode top = root.addNewFolder("top" + i);
+			top.getValue().addFile("notes", "some text");
+			for(int j = 0; j < FANOUT; j++) {
+				top.addNewFolder("folder" + j);
+				paths[i * FANOUT + j] = "/top" + i + "/folder" + j;
+			}
+		}
+		session = new CommandLine(new FolderTree(root), Writer.nullWriter());
+		session.start();
+		next = 0;
+	}
+
+	/**
+	 * Get the next path to go to, going round all of them
+	 * @return absolute folder path
+	 */
+	private String nextPath() {
+		String path = paths[next];
+		next = next + 1 == paths.length ? 0 : next + 1;
+		return path;
+	}
+
+	/**
+	 * Go to a folder by absolute path
+	 * @return true while the session is active
+	 */
+	@Benchmark
+	public boolean cd() {
+		return session.handleInput("cd " + nextPath());
+	}
+
+	/**
+	 * Go to a folder, then list its parent
+	 * @return true while the session is active
+	 */
+	@Benchmark
+	public boolean cdParentList() {
+		session.handleInput("cd " + nextPath());
+		session.handleInput("par");
+		return session.handleInput("ll");
+	}
+
+	/**
+	 * Run an input that is not a command
+	 * @return true while the session is active
+	 */
+	@Benchmark
+	public boolean unknown() {
+		return session.handleInput("nothing here");
+	}
+}
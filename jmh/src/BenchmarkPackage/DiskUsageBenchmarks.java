@@ -0,0 +1,138 @@
+package BenchmarkPackage;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.File;
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTreeNode;
+import FileSystemPackage.TreeTraversal;
+
+/**
+ * Reading the totals of a tree of a million folders from its root
+ * against walking every folder and file to add them up, and adding text
+ * to a file at the bottom of the tree or moving a folder from one
+ * top folder to another, which update the totals of every folder above them.
+ * After each iteration the totals are checked against a walk
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiskUsageBenchmarks {
+	public static final int NODES = 1000000;
+	public static final int FANOUT = 16;
+	public static final int FILE_EVERY = 8;
+	public static final int CLEAR_EVERY = 1000;
+
+	FolderTreeNode root;
+	File deepFile;
+	int edits;
+	FolderTreeNode moved;
+	FolderTreeNode[] tops;
+	int moves;
+
+	/**
+	 * Build a tree of folders, each with up to FANOUT children,
+	 * with a file in every FILE_EVERY folders and one in the last folder
+	 */
+	@Setup
+	public void setup() {
+		FolderTreeNode[] made = new FolderTreeNode[NODES];
+		made[0] = new FolderTreeNode(new Folder("root"));
+		for(int i = 1; i < NODES; i++) {
+			made[i] = made[(i - 1) / FANOUT].addNewFolder("folder" + i);
+			if(i % FILE_EVERY == 0) {
+				made[i].getValue().addFile("file", "text of file " + i + "\n");
+			}
+		}
+		root = made[0];
+		made[NODES - 1].getValue().addFile("edited");
+		deepFile = made[NODES - 1].getValue().getFile("edited");
+		edits = 0;
+		moved = made[NODES - 1].getParent();
+		tops = new FolderTreeNode[] {made[1], made[2]};
+		moves = 0;
+	}
+
+	/**
+	 * Check the totals of the root still match a walk of the tree
+	 * @throws IllegalStateException if they do not
+	 */
+	@TearDown(Level.Iteration)
+	public void check() {
+		long walked = walk();
+		if(walked != root.getTotalBytes()) {
+			throw new IllegalStateException("Root totals " + root.getTotalBytes() + " bytes, walk found " + walked);
+		}
+	}
+
+	/**
+	 * Read the bytes of text below the root from its totals
+	 * @return bytes of text
+	 */
+	@Benchmark
+	public long totals() {
+		return root.getTotalBytes();
+	}
+
+	/**
+	 * Add up the bytes of text below the root by visiting every folder
+	 * @return bytes of text
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long walk() {
+		long[] bytes = {0};
+		TreeTraversal.preOrder(root, FolderTreeNode::getIterable, node -> {
+			Iterator<File> files = node.getValue().getFileIterator();
+			while(files.hasNext()) {
+				bytes[0] += files.next().size();
+			}
+			return false;
+		});
+		return bytes[0];
+	}
+
+	/**
+	 * Add text to the file at the bottom of the tree,
+	 * clearing it now and then so it stays small
+	 * @return file
+	 */
+	@Benchmark
+	public File addTextDeep() {
+		deepFile.addText("x");
+		if(++edits % CLEAR_EVERY == 0) {
+			deepFile.clear();
+		}
+		return deepFile;
+	}
+
+	/**
+	 * Move the folder holding the edited file to the other top folder,
+	 * taking its totals off the old ancestors and adding them to the new ones
+	 * @return bytes of text below the root
+	 */
+	@Benchmark
+	public long moveFolder() {
+		tops[++moves % 2].addChild(moved);
+		return root.getTotalBytes();
+	}
+}
@@ -0,0 +1,83 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.File;
+
+/**
+ * Adding text to a file and undoing and redoing changes,
+ * on a file with a given amount of versions in its history
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileBenchmarks {
+	@Param({"10", "1000", "10000"})
+	int history;
+
+	File file;
+	String line;
+
+	/**
+	 * Create a file with history versions, each adding a line.
+	 * Made again every iteration so addText does not keep growing it
+	 */
+	@Setup(Level.Iteration)
+	public void setup() {
+		file = new File("file");
+		line = "a line of text in the file\n";
+		for(int i = 0; i < history; i++) {
+			file.addText(line);
+		}
+	}
+
+	/**
+	 * Add a line as a new version
+	 * @return file
+	 */
+	@Benchmark
+	public File addText() {
+		file.addText(line);
+		return file;
+	}
+
+	/**
+	 * Undo the last version and redo it, so the history stays the same depth
+	 * @return file
+	 */
+	@Benchmark
+	public File undoRedo() {
+		file.undo();
+		file.redo();
+		return file;
+	}
+
+	/**
+	 * Undo the last version, redo it, then read the text as a string
+	 * @return text of file
+	 */
+	@Benchmark
+	public String undoRedoText() {
+		file.undo();
+		file.redo();
+		return file.getText();
+	}
+}
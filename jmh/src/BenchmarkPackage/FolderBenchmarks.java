@@ -0,0 +1,84 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.File;
+import FileSystemPackage.Folder;
+
+/**
+ * File lookups in a folder with a given amount of files,
+ * by name with and without the extension
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderBenchmarks {
+	@Param({"4", "64", "1024"})
+	int files;
+
+	Folder folder;
+	String[] prefixes;
+	String[] names;
+	int next;
+
+	/**
+	 * Create a folder holding the files
+	 */
+	@Setup
+	public void setup() {
+		folder = new Folder("folder");
+		prefixes = new String[files];
+		names = new String[files];
+		for(int i = 0; i < files; i++) {
+			prefixes[i] = "file" + i;
+			folder.addFile(prefixes[i]);
+			names[i] = folder.getFile(prefixes[i]).getFileName();
+		}
+		next = 0;
+	}
+
+	/**
+	 * Move on to the next file, going round all of them
+	 * @return index of file
+	 */
+	private int nextIndex() {
+		int index = next;
+		next = next + 1 == files ? 0 : next + 1;
+		return index;
+	}
+
+	/**
+	 * Get a file by the name it was made with
+	 * @return file
+	 */
+	@Benchmark
+	public File getFile() {
+		return folder.getFile(prefixes[nextIndex()]);
+	}
+
+	/**
+	 * Get a file by its full name with the extension
+	 * @return file
+	 */
+	@Benchmark
+	public File getFileWithExtension() {
+		return folder.getFile(names[nextIndex()]);
+	}
+}
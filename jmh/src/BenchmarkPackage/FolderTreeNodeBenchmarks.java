@@ -0,0 +1,110 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.ChildListFactory;
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTreeNode;
+
+/**
+ * Child lookups and adds on a folder with a given amount of children,
+ * with each kind of child list
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderTreeNodeBenchmarks {
+	@Param({"4", "64", "1024"})
+	int fanout;
+
+	@Param({"LINKED", "COPY_ON_WRITE"})
+	ChildListFactory.Kind kind;
+
+	FolderTreeNode parent;
+	String[] names;
+	String missing;
+	FolderTreeNode extra;
+	int next;
+
+	/**
+	 * Create a folder with fanout children
+	 */
+	@Setup
+	public void setup() {
+		ChildListFactory.setKind(kind);
+		parent = new FolderTreeNode(new Folder("parent"));
+		names = new String[fanout];
+		for(int i = 0; i < fanout; i++) {
+			names[i] = "folder" + i;
+			parent.addNewFolder(names[i]);
+		}
+		missing = "missing";
+		extra = new FolderTreeNode(new Folder("extra"));
+		next = 0;
+	}
+
+	/**
+	 * Get the name of the next child to look up, going round all of them
+	 * @return child name
+	 */
+	private String nextName() {
+		String name = names[next];
+		next = next + 1 == names.length ? 0 : next + 1;
+		return name;
+	}
+
+	/**
+	 * Look for a child that exists
+	 * @return true
+	 */
+	@Benchmark
+	public boolean hasFolder() {
+		return parent.hasFolder(nextName());
+	}
+
+	/**
+	 * Look for a child that does not exist
+	 * @return false
+	 */
+	@Benchmark
+	public boolean hasFolderMissing() {
+		return parent.hasFolder(missing);
+	}
+
+	/**
+	 * Get a child that exists
+	 * @return child node
+	 */
+	@Benchmark
+	public FolderTreeNode getFolder() {
+		return parent.getFolder(nextName());
+	}
+
+	/**
+	 * Add a child and remove it again, so the fanout stays the same
+	 * @return true if the child was added
+	 */
+	@Benchmark
+	public boolean addChild() {
+		boolean added = parent.addChild(extra);
+		parent.removeChild(extra);
+		return added;
+	}
+}
@@ -0,0 +1,94 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+import FileSystemPackage.Grep;
+
+/**
+ * A recursive grep over a tree of many files with fork-join pools
+ * of several sizes, to show how the search scales with threads
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrepBenchmarks {
+	public static final int FOLDERS = 20000;
+	public static final int FANOUT = 8;
+	public static final int LINES = 50;
+
+	@Param({"1", "2", "4"})
+	int threads;
+
+	FolderTree tree;
+	ForkJoinPool pool;
+	Grep grep;
+
+	/**
+	 * Build a tree with a file of LINES lines in every folder,
+	 * one line in a hundred holding the word searched for
+	 */
+	@Setup
+	public void setup() {
+		FolderTreeNode[] made = new FolderTreeNode[FOLDERS];
+		made[0] = new FolderTreeNode(new Folder("root"));
+		tree = new FolderTree(made[0]);
+		int line = 0;
+		for(int i = 0; i < FOLDERS; i++) {
+			if(i > 0) {
+				made[i] = made[(i - 1) / FANOUT].addNewFolder("folder" + i);
+			}
+			StringBuilder text = new StringBuilder();
+			for(int j = 0; j < LINES; j++, line++) {
+				text.append("line ").append(j).append(" of a file with some ordinary text in it");
+				if(line % 100 == 0) {
+					text.append(" and a needle");
+				}
+				text.append('\n');
+			}
+			made[i].getValue().addFile("file", text.toString());
+		}
+		Pattern pattern = Grep.compile("ne+dle$");
+		pool = new ForkJoinPool(threads);
+		grep = new Grep(tree, pattern, pool);
+	}
+
+	/**
+	 * Stop the pool
+	 */
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Search every file in the tree
+	 * @return lines found
+	 */
+	@Benchmark
+	public long searchTree() {
+		return grep.search(tree.getRoot(), true, line -> { });
+	}
+}
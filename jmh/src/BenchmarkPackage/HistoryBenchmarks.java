@@ -0,0 +1,92 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.ArrayStack;
+import FileSystemPackage.CommandHistory;
+
+/**
+ * Going back a given amount of lines in the command history and redoing
+ * them all, with the ring of CommandHistory against the two stacks it
+ * replaced, which moved every line between them one at a time
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmarks {
+	public static final int ENTRIES = 100000;
+
+	@Param({"1", "100", "10000"})
+	int lines;
+
+	CommandHistory history;
+	ArrayStack<String> previous;
+	ArrayStack<String> next;
+
+	/**
+	 * Fill the ring and the stacks with ENTRIES commands
+	 */
+	@Setup
+	public void setup() {
+		history = new CommandHistory(ENTRIES);
+		previous = new ArrayStack<String>();
+		next = new ArrayStack<String>();
+		for(int i = 0; i < ENTRIES; i++) {
+			history.push("cd folder" + i);
+			previous.push("cd folder" + i);
+		}
+	}
+
+	/**
+	 * Go back and redo with the ring, which only moves its cursor
+	 * @return command run last
+	 */
+	@Benchmark
+	public String ring() {
+		String input = history.back(lines);
+		history.push(input);
+		if(lines > 1) {
+			input = history.redo(lines - 1);
+			history.push(input);
+		}
+		return input;
+	}
+
+	/**
+	 * Go back and redo with two stacks, popping each line
+	 * from one stack and pushing it on the other
+	 * @return command run last
+	 */
+	@Benchmark
+	public String stacks() {
+		String input = null;
+		for(int i = 0; i < lines; i++) {
+			input = previous.pop();
+			next.push(input);
+		}
+		previous.push(input);
+		next.pop();
+		while(!next.isEmpty()) {
+			input = next.pop();
+			previous.push(input);
+		}
+		return input;
+	}
+}
@@ -0,0 +1,84 @@
+package BenchmarkPackage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Journal;
+
+/**
+ * Journaling a change under each force policy, syncing after every change
+ * as an interactive session does or after a batch of changes as batch mode does
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmarks {
+	public static final int INTERVAL_MILLIS = 10;
+
+	@Param({"COMMAND", "INTERVAL", "NONE"})
+	Journal.Policy policy;
+
+	@Param({"1", "4096"})
+	int syncEvery;
+
+	Path path;
+	Journal journal;
+	int changes;
+
+	/**
+	 * Open a new journal, every iteration so the file does not keep growing
+	 * @throws IOException if the journal can not be opened
+	 */
+	@Setup(Level.Iteration)
+	public void setup() throws IOException {
+		path = Files.createTempFile("tree", ".journal");
+		journal = new Journal(path, policy, INTERVAL_MILLIS);
+		changes = 0;
+	}
+
+	/**
+	 * Close and delete the journal
+	 * @throws IOException if the journal can not be closed or deleted
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		journal.close();
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Journal one change, syncing once syncEvery changes are waiting
+	 * @return sequence number of change
+	 * @throws IOException if the journal can not be written
+	 */
+	@Benchmark
+	public long append() throws IOException {
+		changes ++;
+		long sequence = journal.append(Journal.Op.ADD, "root/folder" + changes % 10, "notes.txt", "line of text\n");
+		if(changes % syncEvery == 0) {
+			journal.sync();
+		}
+		return sequence;
+	}
+}
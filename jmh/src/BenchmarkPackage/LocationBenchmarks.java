@@ -0,0 +1,74 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTreeNode;
+
+/**
+ * Location strings of a folder at a given depth,
+ * both kept from the last call and rebuilt after the tree changed
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmarks {
+	@Param({"1", "8", "64"})
+	int depth;
+
+	FolderTreeNode deepest;
+	Folder outside;
+	boolean renamed;
+
+	/**
+	 * Create a chain of folders depth long
+	 */
+	@Setup
+	public void setup() {
+		FolderTreeNode node = new FolderTreeNode(new Folder("root"));
+		for(int i = 0; i < depth; i++) {
+			node = node.addNewFolder("folder" + i);
+		}
+		deepest = node;
+		outside = new Folder("outside");
+		renamed = false;
+	}
+
+	/**
+	 * Get the location when it is already kept
+	 * @return location of deepest folder
+	 */
+	@Benchmark
+	public String cached() {
+		return deepest.getLocationString();
+	}
+
+	/**
+	 * Rename a folder outside the chain, which puts every kept location
+	 * out of date, then get the location
+	 * @return location of deepest folder
+	 */
+	@Benchmark
+	public String afterChange() {
+		renamed = !renamed;
+		outside.setName(renamed ? "renamed" : "outside");
+		return deepest.getLocationString();
+	}
+}
@@ -0,0 +1,253 @@
+package BenchmarkPackage;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.File;
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+import FileSystemPackage.Stack;
+import FileSystemPackage.TerminalServer;
+
+/**
+ * Heap kept by file history, folder nodes, the location index and idle
+ * server connections. Each benchmark builds the structure once, measures
+ * the heap in use after a garbage collection before and after, and reports
+ * the bytes per version, node or connection as a secondary result next to
+ * its time. The append workload is measured both with every version kept as
+ * a full copy of the text, as File did before it kept edits, and with File.
+ * JMH adds up secondary results over the measured iterations, so there is
+ * one, after a warm up; leave -i at 1
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(1)
+public class MemoryBenchmarks {
+	public static final int VERSIONS = 2000;
+	public static final String LINE = "2020-01-01 12:00:00 INFO request handled\n";
+	public static final int FANOUT = 100;
+	public static final int NODES = FANOUT * FANOUT * FANOUT;
+	public static final int IDLE = 1000;
+
+	/**
+	 * Return the heap currently in use after asking for a garbage collection
+	 * @return bytes of heap used
+	 */
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Bytes of heap kept per version of a file, reported with the append benchmarks
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PerVersion {
+		public long bytesPerVersion;
+	}
+
+	/**
+	 * Bytes of heap kept per folder, reported with the tree benchmarks
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PerNode {
+		public long bytesPerNode;
+	}
+
+	/**
+	 * Bytes of heap kept per folder by the location index, measured and
+	 * as estimated by FolderTree.indexBytes, reported with the index benchmark
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PerIndexedNode {
+		public long bytesPerNode;
+		public long estimatedBytesPerNode;
+	}
+
+	/**
+	 * Bytes of heap kept per idle connection, counting both ends,
+	 * reported with the server benchmark
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PerConnection {
+		public long bytesPerConnection;
+	}
+
+	/**
+	 * A tree of NODES folders with FANOUT children per folder, not yet indexed
+	 */
+	@State(Scope.Thread)
+	public static class Unindexed {
+		FolderTreeNode root;
+
+		/**
+		 * Build the tree, every iteration so indexing it starts from nothing
+		 */
+		@Setup(Level.Iteration)
+		public void setup() {
+			root = grow(3);
+		}
+	}
+
+	/**
+	 * Make a root folder with FANOUT children, and FANOUT children
+	 * in each of them, down to a given level
+	 * @param levels levels below the root
+	 * @return root node
+	 */
+	static FolderTreeNode grow(int levels) {
+		FolderTreeNode root = new FolderTreeNode(new Folder("root"));
+		grow(root, levels);
+		return root;
+	}
+
+	/**
+	 * Add FANOUT children to a node, and to each of them, down to a given level
+	 * @param node node to add children to
+	 * @param level levels left to add
+	 */
+	private static void grow(FolderTreeNode node, int level) {
+		if(level == 0) {
+			return;
+		}
+		for(int i = 0; i < FANOUT; i++) {
+			grow(node.addNewFolder("folder" + i), level - 1);
+		}
+	}
+
+	/**
+	 * Append VERSIONS lines keeping every previous version as a full copy of the text
+	 * @param heap bytes kept per version
+	 * @return stack of versions
+	 */
+	@Benchmark
+	public Stack<String> appendFullCopies(PerVersion heap) {
+		long before = usedHeap();
+		Stack<String> versions = new Stack<String>();
+		String text = "";
+		for(int i = 0; i < VERSIONS; i++) {
+			versions.push(text);
+			text += LINE;
+		}
+		versions.push(text);
+		heap.bytesPerVersion = (usedHeap() - before) / VERSIONS;
+		return versions;
+	}
+
+	/**
+	 * Append VERSIONS lines to a file, which keeps the edits
+	 * @param heap bytes kept per version
+	 * @return file
+	 */
+	@Benchmark
+	public File appendEdits(PerVersion heap) {
+		long before = usedHeap();
+		File file = new File("log");
+		for(int i = 0; i < VERSIONS; i++) {
+			file.addText(LINE);
+		}
+		heap.bytesPerVersion = (usedHeap() - before) / VERSIONS;
+		return file;
+	}
+
+	/**
+	 * Build a tree of NODES folders, with their child lists and totals
+	 * @param heap bytes kept per folder
+	 * @return root of tree
+	 */
+	@Benchmark
+	public FolderTreeNode folders(PerNode heap) {
+		long before = usedHeap();
+		FolderTreeNode root = grow(3);
+		heap.bytesPerNode = (usedHeap() - before) / NODES;
+		return root;
+	}
+
+	/**
+	 * Index a tree of NODES folders by location string,
+	 * counting the index and the location strings it keeps,
+	 * next to the estimate the tree gives
+	 * @param tree tree to index
+	 * @param heap bytes kept per folder
+	 * @return indexed tree
+	 */
+	@Benchmark
+	public FolderTree locationIndex(Unindexed tree, PerIndexedNode heap) {
+		long before = usedHeap();
+		FolderTree indexed = new FolderTree(tree.root);
+		heap.bytesPerNode = (usedHeap() - before) / NODES;
+		heap.estimatedBytesPerNode = indexed.indexBytes() / indexed.size();
+		return indexed;
+	}
+
+	/**
+	 * Open IDLE connections to a terminal server in this JVM
+	 * and leave them idle, then close them and the server
+	 * @param heap bytes kept per connection
+	 * @return connections still open
+	 * @throws Exception if the server or a connection fails
+	 */
+	@Benchmark
+	public int idleConnections(PerConnection heap) throws Exception {
+		TerminalServer server = new TerminalServer(new FolderTree(new FolderTreeNode(new Folder("root"))),
+				null, IDLE, TerminalServer.DEFAULT_IDLE_MILLIS, 1);
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		Thread serverThread = new Thread(() -> {
+			try {
+				server.run();
+			}catch (IOException e) {
+				//closed
+			}
+		}, "terminal-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		ArrayList<SocketChannel> channels = new ArrayList<SocketChannel>(IDLE);
+		try {
+			long before = usedHeap();
+			for(int i = 0; i < IDLE; i++) {
+				channels.add(SocketChannel.open(server.getAddress()));
+			}
+			while(server.connectionCount() < IDLE) {
+				Thread.sleep(10);
+			}
+			heap.bytesPerConnection = (usedHeap() - before) / IDLE;
+			return server.connectionCount();
+		}finally {
+			for(SocketChannel channel: channels) {
+				channel.close();
+			}
+			server.close();
+			serverThread.join();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+
+/**
+ * Looking up folders in a tree of a million folders,
+ * by location string in the index and by path from the root
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathIndexBenchmarks {
+	public static final int FANOUT = 100;
+	public static final int LEVELS = 3;
+
+	FolderTree tree;
+	String[] locations;
+	String[] paths;
+	int next;
+
+	/**
+	 * Add FANOUT children to a node, and to each of them, down to a given level
+	 * @param node node to add children to
+	 * @param level levels left to add
+	 */
+	private static void grow(FolderTreeNode node, int level) {
+		if(level == 0) {
+			return;
+		}
+		for(int i = 0; i < FANOUT; i++) {
+			grow(node.addNewFolder("folder" + i), level - 1);
+		}
+	}
+
+	/**
+	 * Build and index the tree, and pick deepest folders to look up
+	 */
+	@Setup
+	public void setup() {
+		FolderTreeNode root = new FolderTreeNode(new Folder("root"));
+		grow(root, LEVELS);
+		tree = new FolderTree(root);
+		locations = new String[FANOUT];
+		paths = new String[FANOUT];
+		for(int i = 0; i < FANOUT; i++) {
+			String path = "/folder" + i + "/folder" + (FANOUT - 1 - i) + "/folder" + i;
+			locations[i] = "root" + path;
+			paths[i] = path;
+		}
+		next = 0;
+	}
+
+	/**
+	 * Move on to the next folder to look up, going round all of them
+	 * @return index of folder
+	 */
+	private int nextIndex() {
+		int index = next;
+		next = next + 1 == FANOUT ? 0 : next + 1;
+		return index;
+	}
+
+	/**
+	 * Look up a deepest folder by its location string
+	 * @return folder found
+	 */
+	@Benchmark
+	public FolderTreeNode getFolder() {
+		return tree.getFolder(locations[nextIndex()]);
+	}
+
+	/**
+	 * Look up a deepest folder by an absolute path
+	 * @return folder found
+	 */
+	@Benchmark
+	public FolderTreeNode findFolder() {
+		return tree.findFolder(tree.getRoot(), paths[nextIndex()]);
+	}
+}
@@ -0,0 +1,163 @@
+package BenchmarkPackage;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+import FileSystemPackage.TerminalServer;
+
+/**
+ * Round trips of a command to a terminal server in this JVM, one active
+ * connection per benchmark thread, while a given amount of idle
+ * connections stay open. Run with -t to change the active connections
+ * @author fiona
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ServerBenchmarks {
+	public static final int MAX_ACTIVE = 256;
+	public static final String PROMPT = "root/";
+
+	@Param({"0", "1000"})
+	int idle;
+
+	TerminalServer server;
+	InetSocketAddress address;
+	ArrayList<SocketChannel> idleChannels;
+
+	/**
+	 * Start a server and open the idle connections
+	 * @throws Exception if the server or a connection fails
+	 */
+	@Setup
+	public void setup() throws Exception {
+		FolderTreeNode root = new FolderTreeNode(new Folder("root"));
+		for(int i = 0; i < 16; i++) {
+			root.addNewFolder("folder" + i);
+		}
+		server = new TerminalServer(new FolderTree(root), null, idle + MAX_ACTIVE, TerminalServer.DEFAULT_IDLE_MILLIS, 4);
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		address = server.getAddress();
+		Thread serverThread = new Thread(() -> {
+			try {
+				server.run();
+			}catch (IOException e) {
+				//closed
+			}
+		}, "terminal-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		idleChannels = new ArrayList<SocketChannel>(idle);
+		for(int i = 0; i < idle; i++) {
+			idleChannels.add(SocketChannel.open(address));
+		}
+		while(server.connectionCount() < idle) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Close the idle connections and the server
+	 * @throws IOException if closing fails
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		for(SocketChannel channel: idleChannels) {
+			channel.close();
+		}
+		server.close();
+	}
+
+	/**
+	 * Read from a connection until the output ends with the prompt
+	 * @param channel connection to read
+	 * @param buffer buffer to read into
+	 * @throws IOException if the connection closes first
+	 */
+	static void readPrompt(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		StringBuilder text = new StringBuilder();
+		while(text.length() < PROMPT.length() || text.lastIndexOf(PROMPT) != text.length() - PROMPT.length()) {
+			buffer.clear();
+			if(channel.read(buffer) < 0) {
+				throw new IOException("Connection closed");
+			}
+			buffer.flip();
+			text.append(StandardCharsets.UTF_8.decode(buffer));
+		}
+	}
+
+	/**
+	 * One active connection, used by one benchmark thread
+	 */
+	@State(Scope.Thread)
+	public static class Client {
+		SocketChannel channel;
+		ByteBuffer buffer;
+		ByteBuffer command;
+
+		/**
+		 * Connect and wait for the first prompt
+		 * @param shared server to connect to
+		 * @throws IOException if the connection fails
+		 */
+		@Setup
+		public void setup(ServerBenchmarks shared) throws IOException {
+			channel = SocketChannel.open(shared.address);
+			buffer = ByteBuffer.allocate(8192);
+			command = ByteBuffer.wrap("ll\n".getBytes(StandardCharsets.UTF_8));
+			readPrompt(channel, buffer);
+		}
+
+		/**
+		 * Close the connection
+		 * @throws IOException if closing fails
+		 */
+		@TearDown
+		public void tearDown() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Send a listing command and wait for its output and the next prompt
+	 * @param client connection of this thread
+	 * @throws IOException if the connection fails
+	 */
+	@Benchmark
+	public void listRoundTrip(Client client) throws IOException {
+		client.command.rewind();
+		while(client.command.hasRemaining()) {
+			client.channel.write(client.command);
+		}
+		readPrompt(client.channel, client.buffer);
+	}
+}
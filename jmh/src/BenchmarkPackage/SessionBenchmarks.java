@@ -0,0 +1,125 @@
+package BenchmarkPackage;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import FileSystemPackage.ChildListFactory;
+import FileSystemPackage.CommandLine;
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+
+/**
+ * Sessions sharing one folder tree, one per benchmark thread,
+ * with each kind of child list. Sessions mostly navigate and list
+ * folders, and now and then make a folder or file.
+ * Run with -t to change the amount of sessions
+ * @author fiona
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SessionBenchmarks {
+	public static final int TOP_FOLDERS = 32;
+	public static final int FANOUT = 8;
+	public static final int WRITE_EVERY = 50;
+	public static final int MADE_PER_SESSION = 1000;
+
+	@Param({"LINKED", "COPY_ON_WRITE"})
+	ChildListFactory.Kind kind;
+
+	FolderTree tree;
+
+	/**
+	 * Create the shared tree
+	 */
+	@Setup
+	public void setup() {
+		ChildListFactory.setKind(kind);
+		FolderTreeNode root = new FolderTreeNode(new Folder("root"));
+		for(int i = 0; i < TOP_FOLDERS; i++) {
+			FolderTreeNode top = root.addNewFolder("top" + i);
+			for(int j = 0; j < FANOUT; j++) {
+				top.addNewFolder("folder" + j);
+			}
+		}
+		tree = new FolderTree(root);
+	}
+
+	/**
+	 * One session on the shared tree, run by one benchmark thread
+	 */
+	@State(Scope.Thread)
+	public static class Session {
+		CommandLine session;
+		int id;
+		int next;
+
+		/**
+		 * Start a session on the shared tree
+		 * @param shared shared tree
+		 * @param thread parameters of the thread running the session
+		 */
+		@Setup
+		public void setup(SessionBenchmarks shared, ThreadParams thread) {
+			session = new CommandLine(shared.tree, Writer.nullWriter());
+			session.start();
+			id = thread.getThreadIndex();
+			next = 0;
+		}
+
+		/**
+		 * Get the next input of the session. Folders and files made are
+		 * named round MADE_PER_SESSION names, so the tree stops growing
+		 * @return command to run
+		 */
+		String nextInput() {
+			int i = next++;
+			int top = (i * 7) % TOP_FOLDERS;
+			int child = (i * 3) % FANOUT;
+			if(i % WRITE_EVERY == 0) {
+				int made = (i / WRITE_EVERY) % MADE_PER_SESSION;
+				return (made % 2 == 0 ? "mkdir s" : "mkfil s") + id + "_" + made;
+			}
+			switch(i % 4) {
+			case 0:
+				return "cd /top" + top + "/folder" + child;
+			case 1:
+				return "ll";
+			case 2:
+				return "par";
+			default:
+				return "cd ../folder" + child;
+			}
+		}
+	}
+
+	/**
+	 * Run the next input of this thread's session
+	 * @param session session of this thread
+	 * @return true while the session is active
+	 */
+	@Benchmark
+	public boolean input(Session session) {
+		return session.session.handleInput(session.nextInput());
+	}
+}
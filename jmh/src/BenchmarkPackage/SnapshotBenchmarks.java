@@ -0,0 +1,107 @@
+package BenchmarkPackage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+import FileSystemPackage.Snapshot;
+
+/**
+ * Saving and loading a snapshot of a tree of about half a million folders,
+ * each holding a small file
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmarks {
+	public static final int TOP_FOLDERS = 64;
+	public static final int FANOUT = 20;
+	public static final int LEVELS = 3;
+
+	FolderTree tree;
+	Path saved;
+	Path loaded;
+
+	/**
+	 * Add FANOUT children, each with a file, to a node, and to each of them, down to a given level
+	 * @param node node to add children to
+	 * @param level levels left to add
+	 */
+	private static void grow(FolderTreeNode node, int level) {
+		if(level == 0) {
+			return;
+		}
+		for(int i = 0; i < FANOUT; i++) {
+			FolderTreeNode child = node.addNewFolder("folder" + i);
+			child.getValue().addFile("notes", "line " + i + "\n");
+			grow(child, level - 1);
+		}
+	}
+
+	/**
+	 * Build the tree and save the snapshot the load benchmark reads
+	 * @throws IOException if the snapshot can not be written
+	 */
+	@Setup
+	public void setup() throws IOException {
+		FolderTreeNode root = new FolderTreeNode(new Folder("root"));
+		for(int i = 0; i < TOP_FOLDERS; i++) {
+			grow(root.addNewFolder("top" + i), LEVELS);
+		}
+		tree = new FolderTree(root);
+		saved = Files.createTempFile("tree", ".snap");
+		loaded = Files.createTempFile("tree", ".snap");
+		Snapshot.save(tree, loaded);
+	}
+
+	/**
+	 * Delete the snapshot files
+	 * @throws IOException if a file can not be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(saved);
+		Files.deleteIfExists(loaded);
+	}
+
+	/**
+	 * Save the whole tree
+	 * @return folders and files saved
+	 * @throws IOException if the snapshot can not be written
+	 */
+	@Benchmark
+	public Snapshot save() throws IOException {
+		return Snapshot.save(tree, saved);
+	}
+
+	/**
+	 * Load the whole tree, leaving file text in the snapshot until it is used
+	 * @return loaded tree
+	 * @throws IOException if the snapshot can not be read
+	 */
+	@Benchmark
+	public FolderTree load() throws IOException {
+		return Snapshot.load(loaded);
+	}
+}
@@ -0,0 +1,80 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.StackFactory;
+import FileSystemPackage.StackInterface;
+
+/**
+ * Push and pop on both stack implementations,
+ * one entry at a time on a stack already holding some entries
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackBenchmarks {
+	@Param({"LINKED", "ARRAY"})
+	StackFactory.Kind kind;
+
+	@Param({"0", "1000"})
+	int depth;
+
+	StackInterface<String> stack;
+	String entry;
+
+	/**
+	 * Create a stack of the kind and fill it to the depth
+	 */
+	@Setup
+	public void setup() {
+		StackFactory.setKind(kind);
+		stack = StackFactory.newStack();
+		for(int i = 0; i < depth; i++) {
+			stack.push("cd folder" + i);
+		}
+		entry = "cd folder";
+	}
+
+	/**
+	 * Push one entry and pop it back off
+	 * @return popped entry
+	 */
+	@Benchmark
+	public String pushPop() {
+		stack.push(entry);
+		return stack.pop();
+	}
+
+	/**
+	 * Push a run of entries then pop all of them
+	 * @return last popped entry
+	 */
+	@Benchmark
+	public String pushPopRun() {
+		for(int i = 0; i < 64; i++) {
+			stack.push(entry);
+		}
+		String last = null;
+		for(int i = 0; i < 64; i++) {
+			last = stack.pop();
+		}
+		return last;
+	}
+}
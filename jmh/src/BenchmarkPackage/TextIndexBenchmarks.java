@@ -0,0 +1,159 @@
+package BenchmarkPackage;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.File;
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTree;
+import FileSystemPackage.FolderTreeNode;
+import FileSystemPackage.TextIndex;
+
+/**
+ * Searching the text index of a tree of many small files with AND and OR
+ * queries, and keeping it up to date while files are edited
+ * @author fiona
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextIndexBenchmarks {
+	public static final int FILES_PER_FOLDER = 100;
+	public static final int FANOUT = 8;
+	public static final int WORDS = 12;
+	public static final int VOCABULARY = 50000;
+	public static final int UNDO_EVERY = 4;
+
+	/**
+	 * Make a line of random words, the words with small numbers more often
+	 * @param random source of words
+	 * @return WORDS words separated by spaces
+	 */
+	private static String words(Random random) {
+		StringBuilder text = new StringBuilder();
+		for(int k = 0; k < WORDS; k++) {
+			int word = (int) (VOCABULARY * Math.pow(random.nextDouble(), 3));
+			text.append("w").append(word).append(' ');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * A tree of folders of FILES_PER_FOLDER files and its index,
+	 * built by the setup of each kind of state
+	 */
+	@State(Scope.Thread)
+	public static class Indexed {
+		@Param({"100000", "1000000"})
+		int files;
+
+		FolderTree tree;
+		TextIndex index;
+		Random random;
+
+		/**
+		 * Build the tree and index it
+		 */
+		void build() {
+			random = new Random(1);
+			int folders = (files + FILES_PER_FOLDER - 1) / FILES_PER_FOLDER;
+			FolderTreeNode[] made = new FolderTreeNode[folders];
+			made[0] = new FolderTreeNode(new Folder("root"));
+			tree = new FolderTree(made[0]);
+			int file = 0;
+			for(int i = 0; i < folders; i++) {
+				if(i > 0) {
+					made[i] = made[(i - 1) / FANOUT].addNewFolder("folder" + i);
+				}
+				Folder folder = made[i].getValue();
+				for(int j = 0; j < FILES_PER_FOLDER && file < files; j++, file++) {
+					folder.addFile("file" + j, words(random));
+				}
+			}
+			index = tree.textIndex();
+		}
+	}
+
+	/**
+	 * An indexed tree and a query to run on it
+	 */
+	@State(Scope.Thread)
+	public static class Searched extends Indexed {
+		@Param({"w0", "w0 w1", "w40000", "w0 w40000", "w30000 OR w40000", "w1 w2 OR w3 w4"})
+		String query;
+
+		/**
+		 * Build the tree and index it
+		 */
+		@Setup
+		public void setup() {
+			build();
+		}
+	}
+
+	/**
+	 * An indexed tree and the files of its root folder to edit
+	 */
+	@State(Scope.Thread)
+	public static class Edited extends Indexed {
+		File[] rootFiles;
+		int edits;
+
+		/**
+		 * Build the tree, index it and pick the files of the root folder
+		 */
+		@Setup
+		public void setup() {
+			build();
+			Folder top = tree.getRoot().getValue();
+			rootFiles = new File[top.numberOfFiles()];
+			for(int i = 0; i < rootFiles.length; i++) {
+				rootFiles[i] = top.getFile("file" + i);
+			}
+			edits = 0;
+		}
+	}
+
+	/**
+	 * Run the query
+	 * @param state index and query
+	 * @return files found
+	 */
+	@Benchmark
+	public ArrayList<File> search(Searched state) {
+		return state.index.search(state.query);
+	}
+
+	/**
+	 * Add a word to a file in the root folder, undoing an edit now and then,
+	 * which tells the index which words of the file changed
+	 * @param state index and files to edit
+	 * @return file edited
+	 */
+	@Benchmark
+	public File edit(Edited state) {
+		File file = state.rootFiles[state.random.nextInt(state.rootFiles.length)];
+		if(++state.edits % UNDO_EVERY == 0) {
+			file.undo();
+		}else {
+			file.addText("w" + state.random.nextInt(VOCABULARY) + " ");
+		}
+		return file;
+	}
+}
@@ -0,0 +1,80 @@
+package BenchmarkPackage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import FileSystemPackage.Folder;
+import FileSystemPackage.FolderTreeNode;
+
+/**
+ * Searching a whole subtree of a million folders for a folder that is not
+ * in it, on a chain deeper than a recursive search could handle and on
+ * one folder with every other folder as its child
+ * @author fiona
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmarks {
+	public static final int NODES = 1000000;
+
+	/**
+	 * Shapes of tree searched
+	 */
+	public enum Shape {
+		CHAIN, FANOUT
+	}
+
+	@Param({"CHAIN", "FANOUT"})
+	Shape shape;
+
+	FolderTreeNode root;
+	Folder missing;
+
+	/**
+	 * Build the tree of the shape. The chain is built from the bottom up,
+	 * so adding a folder only adds to the totals of the one it is added to
+	 */
+	@Setup
+	public void setup() {
+		if(shape == Shape.CHAIN) {
+			FolderTreeNode node = new FolderTreeNode(new Folder("folder" + (NODES - 1)));
+			for(int i = NODES - 2; i >= 0; i--) {
+				FolderTreeNode parent = new FolderTreeNode(new Folder(i == 0 ? "root" : "folder" + i));
+				parent.addChild(node);
+				node = parent;
+			}
+			root = node;
+		}else {
+			root = new FolderTreeNode(new Folder("root"));
+			for(int i = 1; i < NODES; i++) {
+				root.addNewFolder("folder" + i);
+			}
+		}
+		missing = new Folder("missing");
+	}
+
+	/**
+	 * Search every folder for one that is not there
+	 * @return false
+	 */
+	@Benchmark
+	public boolean hasElementMissing() {
+		return root.hasElement(missing);
+	}
+}
@@ -0,0 +1,191 @@
+package FileSystemPackage;
+import java.util.*;
+
+/**
+ * Stack implementation using a circular array.
+ * Pushing does not allocate unless the array has to grow.
+ * A stack can be given a capacity, once it is full
+ * pushing a new entry drops the entry at the bottom.
+ * @author fiona
+ *
+ * @param <T> generic object of stack
+ */
+public class ArrayStack<T> implements StackInterface<T> {
+	public static final int DEFAULT_CAPACITY = 16;
+	public static final int UNBOUNDED = 0;
+	private static final Object[] NO_ENTRIES = new Object[0];
+
+	T[] entries;
+	int bottom;
+	int size;
+	int maxCapacity;
+
+	/**
+	 * Create an empty stack with no capacity limit
+	 */
+	public ArrayStack() {
+		this(UNBOUNDED);
+	}
+
+	/**
+	 * Create an empty stack holding at most maxCapacity entries, 
+	 * the array is not allocated until the first push
+	 * @param maxCapacity most entries kept, UNBOUNDED for no limit
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayStack(int maxCapacity) {
+		if(maxCapacity < 0) {
+			throw new IllegalArgumentException("Capacity " + maxCapacity + " can not be negative");
+		}
+		this.maxCapacity = maxCapacity;
+		entries = (T[]) NO_ENTRIES;
+		bottom = 0;
+		size = 0;
+	}
+
+	/**
+	 * Return the array index of an entry a given depth below the top
+	 * @param depth entries below the top, 0 for the top
+	 * @return index in entries
+	 */
+	private int indexOf(int depth) {
+		int index = bottom + size - 1 - depth;
+		if(index >= entries.length) {
+			index -= entries.length;
+		}
+		return index;
+	}
+
+	/**
+	 * Double the size of the array, up to the capacity limit
+	 */
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		int length = Math.max(DEFAULT_CAPACITY, entries.length * 2);
+		if(maxCapacity != UNBOUNDED && length > maxCapacity) {
+			length = maxCapacity;
+		}
+		T[] newEntries = (T[]) new Object[length];
+		for(int i = 0; i < size; i++) {
+			newEntries[i] = entries[(bottom + i) % entries.length];
+		}
+		entries = newEntries;
+		bottom = 0;
+	}
+
+	/** Adds a new entry to the top of this stack.
+	 * If the stack is at capacity the bottom entry is dropped.
+    @param newEntry  An object to be added to the stack. */
+	@Override
+	public void push(T newEntry) {
+		if(maxCapacity != UNBOUNDED && size == maxCapacity) {
+			removeBottom();
+		}else if(size == entries.length) {
+			grow();
+		}
+		size ++;
+		entries[indexOf(0)] = newEntry;
+	}
+
+	 /** Removes and returns this stack's top entry.
+    @return  The object at the top of the stack.
+   @throws  EmptyStackException if the stack is empty before
+    the operation. */
+	@Override
+	public T pop() {
+		if(isEmpty()) {
+			throw new EmptyStackException();
+		}else {
+			int index = indexOf(0);
+			T data = entries[index];
+			entries[index] = null;
+			size --;
+			return data;
+		}
+	}
+
+	/** Retrieves this stack's top entry.
+    @return  The object at the top of the stack.
+    @throws  EmptyStackException if the stack is empty. */
+	@Override
+	public T peek() {
+		return peek(0);
+	}
+
+	/** Retrieves the entry a given depth below the top.
+    @param depth entries below the top, 0 for the top
+    @return  The object at depth.
+    @throws  EmptyStackException if the stack is empty.
+    @throws  IndexOutOfBoundsException if depth is not in the stack. */
+	public T peek(int depth) {
+		if(isEmpty()) {
+			throw new EmptyStackException();
+		}else if(depth < 0 || depth >= size) {
+			throw new IndexOutOfBoundsException("Depth " + depth + " is out of bounds!");
+		}else {
+			return entries[indexOf(depth)];
+		}
+	}
+
+	/** Removes and returns this stack's bottom entry.
+    @return  The object at the bottom of the stack.
+    @throws  EmptyStackException if the stack is empty. */
+	public T removeBottom() {
+		if(isEmpty()) {
+			throw new EmptyStackException();
+		}else {
+			T data = entries[bottom];
+			entries[bottom] = null;
+			bottom = (bottom + 1) % entries.length;
+			size --;
+			return data;
+		}
+	}
+
+	 /** Detects whether this stack is empty.
+    @return  True if the stack is empty. */
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Gets the number of entries in this stack.
+    @return  The number of entries. */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** Gets the most entries this stack keeps.
+    @return  The capacity limit, UNBOUNDED if there is none. */
+	public int getMaxCapacity() {
+		return maxCapacity;
+	}
+
+	/** Removes all entries from this stack, only clearing the slots in use. */
+	@Override
+	public void clear() {
+		if(size == 0) {
+			return;
+		}
+		//the entries run from bottom to the end of the array, then wrap around to the start
+		int end = bottom + size;
+		Arrays.fill(entries, bottom, Math.min(end, entries.length), null);
+		if(end > entries.length) {
+			Arrays.fill(entries, 0, end - entries.length, null);
+		}
+		bottom = 0;
+		size = 0;
+	}
+
+	public static void main(String[] args) {
+		ArrayStack<String> stack = new ArrayStack<String>(2);
+		stack.push("Hello");
+		stack.push("World");
+		stack.push("Again");
+		System.out.println(stack.peek(1));
+		System.out.println(stack.pop());
+		System.out.println(stack.pop());
+		System.out.println(stack.isEmpty());
+	}
+}
@@ -0,0 +1,76 @@
+package FileSystemPackage;
+
+import java.util.Iterator;
+
+/**
+ * Children of a folder tree node, in the order they were added 
+ * and looked up by folder name. No two children share a name. 
+ * @author fiona
+ *
+ */
+public interface ChildList extends Iterable<FolderTreeNode> {
+	
+	/**
+	 * Add a child at the end unless another child has its name
+	 * @param child node to add
+	 * @return true if child was added
+	 */
+	public boolean add(FolderTreeNode child); 
+	
+	/**
+	 * Remove a child 
+	 * @param child node to remove
+	 * @return true if child was removed, false if it was not a child
+	 */
+	public boolean remove(FolderTreeNode child); 
+	
+	/**
+	 * Move a child to a new name, keeping its place in the order. 
+	 * Will not rename if another child already has the new name
+	 * @param child child being renamed, still under its old name
+	 * @param newName name the child will have
+	 * @return true if the child can take the new name
+	 */
+	public boolean rename(FolderTreeNode child, String newName); 
+	
+	/**
+	 * Get the child with a folder name
+	 * @param name folder name to look for
+	 * @return child with name, null if there is none
+	 */
+	public FolderTreeNode get(String name); 
+	
+	/**
+	 * Get the child at an index of the order
+	 * @param index index of child
+	 * @return child at index
+	 * @throws IndexOutOfBoundsException if there is no child at index
+	 */
+	public FolderTreeNode get(int index); 
+	
+	/**
+	 * Get amount of children
+	 * @return number of children
+	 */
+	public int size(); 
+	
+	/**
+	 * Get a new array of the children
+	 * @return array of children in order
+	 */
+	public FolderTreeNode[] toArray(); 
+	
+	/**
+	 * Get an iterator over the children in order
+	 * @return child iterator
+	 */
+	@Override
+	public Iterator<FolderTreeNode> iterator(); 
+	
+	/**
+	 * Return true if the list can be read while another thread changes it, 
+	 * without a lock and without seeing a change half done
+	 * @return true if reads need no lock
+	 */
+	public boolean isConcurrent(); 
+}
@@ -0,0 +1,48 @@
+package FileSystemPackage;
+
+/**
+ * Creates the child lists of folder tree nodes, 
+ * so the child list implementation can be chosen in one place. 
+ * The kind should be set before nodes are created, 
+ * nodes keep the kind of list they were created with 
+ * @author fiona
+ *
+ */
+public class ChildListFactory {
+	/**
+	 * Child list implementations that can be created
+	 */
+	public enum Kind {
+		LINKED, COPY_ON_WRITE
+	}
+	
+	private static Kind kind = Kind.LINKED; 
+	
+	/**
+	 * Get the kind of child list created
+	 * @return child list implementation
+	 */
+	public static Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Set the kind of child list created
+	 * @param newKind child list implementation
+	 */
+	public static void setKind(Kind newKind) {
+		kind = newKind;
+	}
+	
+	/**
+	 * Create an empty child list
+	 * @return new child list
+	 */
+	public static ChildList newList() {
+		if(kind == Kind.COPY_ON_WRITE) {
+			return new CopyOnWriteChildList(); 
+		}else {
+			return new LinkedChildList(); 
+		}
+	}
+}
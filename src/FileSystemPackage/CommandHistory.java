@@ -0,0 +1,286 @@
+package FileSystemPackage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * The commands run on a command line, kept in a ring of fixed capacity
+ * so the oldest command is dropped once it is full.
+ *
+ * Entries are numbered by a sequence that only grows, and entry s is kept
+ * in slot s % length of an array that starts small and doubles, copying
+ * the entries kept, until it reaches the capacity, so a history that is
+ * hardly used, such as one of an idle connection, costs almost nothing.
+ * A cursor splits the entries run so far from the entries erased by back,
+ * which redo can bring back, so back and redo only move the cursor
+ * and any entry is read in constant time. Running the entry
+ * just after the cursor again moves the cursor past it and keeps the erased
+ * entries after it; running anything else erases them for good.
+ *
+ * The history can be kept in a memory mapped file of fixed size slots,
+ * so it survives restarts, with entry s in slot s % capacity of the file.
+ * Every change is written to the mapped memory, which the operating system
+ * writes to the file even if the program stops, without forcing it to disk. Commands longer than a slot are kept
+ * in memory but not in the file.
+ * @author fiona
+ *
+ */
+public class CommandHistory {
+	public static final int DEFAULT_CAPACITY = 10000;
+	public static final int SLOT_BYTES = 256;
+	public static final int HEADER_BYTES = 40;
+	public static final int MAGIC = 0x48495354;
+	public static final int INITIAL_ENTRIES = 16;
+	private static final int TOO_LONG = 0xFFFF;
+
+	String[] entries;
+	int capacity;
+	long first;
+	long top;
+	long end;
+	MappedByteBuffer file;
+
+	/**
+	 * Create an empty history kept only in memory
+	 * @param capacity most entries kept
+	 */
+	public CommandHistory(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity " + capacity + " must be at least 1");
+		}
+		this.capacity = capacity;
+		entries = new String[Math.min(capacity, INITIAL_ENTRIES)];
+		first = 0;
+		top = 0;
+		end = 0;
+	}
+
+	/**
+	 * Open a history kept in a file, reading the entries already in it.
+	 * A file written with another capacity is rewritten with this one,
+	 * keeping its newest entries
+	 * @param path history file, created if it does not exist
+	 * @param capacity most entries kept
+	 * @return history holding the file's entries
+	 * @throws IOException if the file can not be read or written
+	 */
+	public static CommandHistory open(Path path, int capacity) throws IOException {
+		CommandHistory history = new CommandHistory(capacity);
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ArrayList<String> saved = new ArrayList<String>();
+			int run = 0;
+			if(channel.size() >= HEADER_BYTES) {
+				MappedByteBuffer old = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if(old.getInt(0) == MAGIC && old.getInt(8) == SLOT_BYTES
+						&& HEADER_BYTES + (long) old.getInt(4) * SLOT_BYTES <= channel.size()) {
+					int oldCapacity = old.getInt(4);
+					long oldFirst = old.getLong(16);
+					long oldTop = old.getLong(24);
+					long oldEnd = old.getLong(32);
+					for(long sequence = oldFirst; sequence < oldEnd; sequence++) {
+						String entry = readSlot(old, (int) (sequence % oldCapacity));
+						if(entry != null) {
+							saved.add(entry);
+							if(sequence < oldTop) {
+								run ++;
+							}
+						}
+					}
+				}
+			}
+
+			long size = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+			channel.truncate(size);
+			history.file = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			history.file.putInt(0, MAGIC);
+			history.file.putInt(4, capacity);
+			history.file.putInt(8, SLOT_BYTES);
+			//only the newest entries fit, but at least the run ones near the cursor
+			int from = Math.max(0, Math.min(run, saved.size() - capacity));
+			int to = Math.min(saved.size(), from + capacity);
+			for(int i = from; i < to; i++) {
+				history.put(history.end, saved.get(i));
+				history.end ++;
+			}
+			history.top = Math.max(0, run - from);
+			history.writeHeader();
+		}
+		return history;
+	}
+
+	/**
+	 * Read the entry in a slot of a mapped file
+	 * @param buffer mapped file
+	 * @param slot slot to read
+	 * @return entry, null if it was too long to keep
+	 */
+	private static String readSlot(MappedByteBuffer buffer, int slot) {
+		int offset = HEADER_BYTES + slot * SLOT_BYTES;
+		int length = buffer.getShort(offset) & 0xFFFF;
+		if(length == TOO_LONG || length > SLOT_BYTES - 2) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(offset + 2, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Put an entry in the slot of a sequence number, and in the file if there is one
+	 * @param sequence sequence number of entry
+	 * @param entry command
+	 */
+	private void put(long sequence, String entry) {
+		if(sequence - first >= entries.length) {
+			grow();
+		}
+		entries[(int) (sequence % entries.length)] = entry;
+		if(file != null) {
+			int slot = (int) (sequence % capacity);
+			int offset = HEADER_BYTES + slot * SLOT_BYTES;
+			byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+			if(bytes.length > SLOT_BYTES - 2) {
+				file.putShort(offset, (short) TOO_LONG);
+			}else {
+				file.putShort(offset, (short) bytes.length);
+				file.put(offset + 2, bytes);
+			}
+		}
+	}
+
+	/**
+	 * Double the array of entries, up to the capacity,
+	 * moving the entries kept to their slots in the new array
+	 */
+	private void grow() {
+		String[] grown = new String[(int) Math.min(capacity, entries.length * 2L)];
+		for(long sequence = first; sequence < end; sequence++) {
+			grown[(int) (sequence % grown.length)] = entry(sequence);
+		}
+		entries = grown;
+	}
+
+	/**
+	 * Get the entry with a sequence number
+	 * @param sequence sequence number of entry, from first up to end
+	 * @return command
+	 */
+	private String entry(long sequence) {
+		return entries[(int) (sequence % entries.length)];
+	}
+
+	/**
+	 * Write where the entries start, the cursor and where they end to the file
+	 */
+	private void writeHeader() {
+		if(file != null) {
+			file.putLong(16, first);
+			file.putLong(24, top);
+			file.putLong(32, end);
+		}
+	}
+
+	/**
+	 * Add a command that was run after the cursor. If it is the erased entry
+	 * just after the cursor, the cursor moves past it and the other erased
+	 * entries are kept, otherwise every erased entry is dropped.
+	 * Once the history is full the oldest entry is dropped
+	 * @param input command run
+	 */
+	public void push(String input) {
+		if(top < end && input.equals(entry(top))) {
+			top ++;
+		}else {
+			if(top - first == capacity) {
+				first ++;
+			}
+			put(top, input);
+			top ++;
+			end = top;
+		}
+		writeHeader();
+	}
+
+	/**
+	 * Get a command run before, counting back from the latest
+	 * @param n 1 for the latest command run, 2 for the one before and so on
+	 * @return command, null if the history does not hold that many
+	 */
+	public String get(int n) {
+		if(n < 1 || n > top - first) {
+			return null;
+		}
+		return entry(top - n);
+	}
+
+	/**
+	 * Get a command erased by back, counting from the cursor
+	 * @param n 1 for the command back erased last, 2 for the one after it and so on
+	 * @return command, null if there are not that many erased
+	 */
+	public String getErased(int n) {
+		if(n < 1 || n > end - top) {
+			return null;
+		}
+		return entry(top + n - 1);
+	}
+
+	/**
+	 * Erase the latest commands back to a given one, which is returned
+	 * to be run again. Nothing changes if there is no such command
+	 * @param n 1 for the latest command run, 2 for the one before and so on
+	 * @return command n back, null if the history does not hold that many
+	 */
+	public String back(int n) {
+		String input = get(n);
+		if(input != null) {
+			top -= n;
+			writeHeader();
+		}
+		return input;
+	}
+
+	/**
+	 * Bring back erased commands up to a given one, which is returned
+	 * to be run again. Nothing changes if there is no such command
+	 * @param n 1 for the command back erased last, 2 for the one after it and so on
+	 * @return erased command, null if there are not that many erased
+	 */
+	public String redo(int n) {
+		String input = getErased(n);
+		if(input != null) {
+			top += n - 1;
+			writeHeader();
+		}
+		return input;
+	}
+
+	/**
+	 * Get amount of commands run that are kept
+	 * @return commands before the cursor
+	 */
+	public int size() {
+		return (int) (top - first);
+	}
+
+	/**
+	 * Get amount of erased commands that can be redone
+	 * @return commands after the cursor
+	 */
+	public int erasedSize() {
+		return (int) (end - top);
+	}
+
+	/**
+	 * Get the most entries kept
+	 * @return capacity of history
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -4,28 +4,129 @@
  * provides basic text manipulation 
  */
 package FileSystemPackage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class CommandLine {
+	public static final int BATCH_SIZE = 4096; 
+	public static final String SNAPSHOT_FILE = "tree.snap"; 
+	public static final String JOURNAL_FILE = "tree.journal"; 
 	HashMap<String, Command> commands; 
 	FolderTree folders; 
 	FolderTreeNode selectedFolder; 
-	Stack<String> previousCommands; 
-	Stack<String> nextCommands; 
+	CommandHistory history; 
 	Boolean active; 
+	BufferedReader in; 
+	PrintWriter out; 
+	boolean interactive; 
+	long inputCount; 
+	Journal journal; 
+	Path snapshotPath; 
+	FileEditor editor; 
+	boolean driven; 
+	Writer recording; 
+	boolean failed; 
 	
 	/**
-	 * Construct command line
+	 * What the file editor shows after each change
+	 */
+	public enum EchoMode {
+		/** the whole text of the file */
+		FULL, 
+		/** nothing */
+		QUIET, 
+		/** only the last lines of the file */
+		TAIL
+	}
+	
+	/**
+	 * Construct command line that reads from 
+	 * and writes to the console 
 	 */
 	public CommandLine() {
-		FolderTreeNode root = new FolderTreeNode(new Folder("root")); 
-		folders = new FolderTree(root); 
+		this(new InputStreamReader(System.in), new OutputStreamWriter(System.out), true); 
+	}
+	
+	/**
+	 * Construct command line with given input and output. 
+	 * Input is read through one buffered reader and output written 
+	 * through one buffered writer. When not interactive, prompts are not 
+	 * shown and output is only flushed every BATCH_SIZE inputs and at the end
+	 * @param input where commands are read from
+	 * @param output where results are written to
+	 * @param interactive true to show prompts and flush after every input
+	 */
+	public CommandLine(Reader input, Writer output, boolean interactive) {
+		this(new FolderTree(new FolderTreeNode(new Folder("root"))), input, output, interactive); 
+	}
+	
+	/**
+	 * Construct a session on a folder tree that other sessions may share. 
+	 * Each session has its own selected folder and command history, 
+	 * changes to folders and files are seen by every session 
+	 * @param folders folder tree to work on
+	 * @param input where commands are read from
+	 * @param output where results are written to
+	 * @param interactive true to show prompts and flush after every input
+	 */
+	public CommandLine(FolderTree folders, Reader input, Writer output, boolean interactive) {
+		this(folders, new BufferedReader(input), new PrintWriter(new BufferedWriter(output)), interactive); 
+	}
+	
+	/**
+	 * Construct a session on a shared folder tree that is given its inputs 
+	 * one at a time with handleInput instead of reading them, 
+	 * such as a session of a terminal server. 
+	 * Output is written straight to output, which should do its own buffering 
+	 * @param folders folder tree to work on
+	 * @param output where results and prompts are written to
+	 */
+	public CommandLine(FolderTree folders, Writer output) {
+		this(folders, null, new PrintWriter(output), true); 
+		driven = true; 
+	}
+	
+	/**
+	 * Construct command line with a reader and writer ready to use
+	 * @param folders folder tree to work on
+	 * @param in where commands are read from, null if inputs are given with handleInput
+	 * @param out where results are written to
+	 * @param interactive true to show prompts and flush after every input
+	 */
+	private CommandLine(FolderTree folders, BufferedReader in, PrintWriter out, boolean interactive) {
+		this.in = in; 
+		this.out = out; 
+		this.interactive = interactive; 
+		driven = false; 
+		inputCount = 0; 
+		
+		this.folders = folders; 
 		selectedFolder = folders.getRoot(); 
 		commands = new HashMap<String, Command>(); 
 		makeCommandMap(); 
 		
-		previousCommands = new Stack<String>();
-		nextCommands = new Stack<String>(); 
+		history = new CommandHistory(CommandHistory.DEFAULT_CAPACITY); 
 		
 		
 	}
@@ -35,10 +136,241 @@ public class CommandLine {
 	 */
 	public void RunCommandLine() {
 		active = true; 
+		long start = System.nanoTime(); 
 		
 		while(active) {
 			getNextInput(); 
 		}
+		
+		if(!interactive) {
+			long nanos = Math.max(1, System.nanoTime() - start); 
+			out.println(inputCount + " inputs in " + nanos / 1000000 + " ms, " 
+					+ (long) (inputCount * 1e9 / nanos) + " inputs per second"); 
+		}
+		flush(); 
+		if(journal != null) {
+			try {
+				journal.close(); 
+			}catch (IOException e) {
+				out.println("Unable to close journal, " + e.getMessage()); 
+				out.flush(); 
+			}
+		}
+	}
+	
+	/**
+	 * Start a session given its inputs with handleInput, 
+	 * showing the first prompt 
+	 */
+	public void start() {
+		active = true; 
+		prompt(); 
+	}
+	
+	/**
+	 * Run one input of a session started with start, 
+	 * as a command or, while a file is being edited, as an editor command, 
+	 * then show the next prompt and flush output 
+	 * @param input line of input
+	 * @return true if the session is still active, false once it exited
+	 */
+	public boolean handleInput(String input) {
+		inputCount ++; 
+		recordInput(input); 
+		if(editor.active) {
+			editor.handle(input); 
+		}else {
+			executeInput(input); 
+		}
+		if(active) {
+			prompt(); 
+		}else {
+			flush(); 
+		}
+		return active; 
+	}
+	
+	/**
+	 * Return true until the session exits
+	 * @return if session is active
+	 */
+	public boolean isActive() {
+		return active; 
+	}
+	
+	/**
+	 * Return true while a file is open in the editor, 
+	 * so inputs go to the editor instead of the command map
+	 * @return if a file is being edited
+	 */
+	boolean isEditing() {
+		return editor.active; 
+	}
+	
+	/**
+	 * Return true while the editor is taking pasted lines
+	 * @return if lines are being pasted
+	 */
+	boolean isPasting() {
+		return editor.active && editor.pasted != null; 
+	}
+	
+	/**
+	 * Write every input from now on to a writer, one per line, 
+	 * so the session can be run again in batch mode or by WorkloadReplay 
+	 * @param recording where inputs are written, null to stop recording
+	 */
+	public void recordTo(Writer recording) {
+		this.recording = recording; 
+	}
+	
+	/**
+	 * Write an input to the recording if there is one, 
+	 * stopping the recording if it can not be written 
+	 * @param input line of input
+	 */
+	private void recordInput(String input) {
+		if(recording != null) {
+			try {
+				recording.write(input);
+				recording.write('\n');
+			}catch (IOException e) {
+				recording = null; 
+				out.println("Unable to record, " + e.getMessage()); 
+			}
+		}
+	}
+	
+	/**
+	 * Show the prompt for the next input, the selected folder 
+	 * or the editor prompt while a file is being edited, and flush output
+	 */
+	private void prompt() {
+		if(editor.active) {
+			out.print(editor.prompt()); 
+		}else {
+			out.print(getSelectedFolder().getLocationString()); 
+			out.print("/"); 
+		}
+		flush(); 
+	}
+	
+	/**
+	 * Journal changes to the same store as another command line, 
+	 * so sessions sharing its tree also share its snapshot and journal 
+	 * @param owner command line that opened the store
+	 */
+	void shareStore(CommandLine owner) {
+		journal = owner.journal; 
+		snapshotPath = owner.snapshotPath; 
+	}
+	
+	/**
+	 * Keep folders and files in a directory so they survive a restart. 
+	 * Loads the snapshot in the directory if there is one, then replays 
+	 * every change journaled after it. Changes from then on are journaled 
+	 * and written to disk before their output is shown. 
+	 * @param directory directory holding the snapshot and journal 
+	 * @param policy when the journal is forced to disk 
+	 * @param intervalMillis milliseconds between forces for the INTERVAL policy 
+	 * @throws IOException if the snapshot or journal can not be read 
+	 */
+	public void openStore(Path directory, Journal.Policy policy, long intervalMillis) throws IOException {
+		Files.createDirectories(directory); 
+		snapshotPath = directory.resolve(SNAPSHOT_FILE); 
+		long sequence = 0; 
+		if(Files.exists(snapshotPath)) {
+			Snapshot snapshot = new Snapshot(); 
+			folders = Snapshot.load(snapshotPath, snapshot); 
+			selectedFolder = folders.getRoot(); 
+			sequence = snapshot.getSequence(); 
+		}
+		journal = new Journal(directory.resolve(JOURNAL_FILE), policy, intervalMillis); 
+		int replayed = journal.replay(folders, sequence); 
+		if(replayed > 0) {
+			out.println("Replayed " + replayed + " changes from journal"); 
+		}
+	}
+	
+	/**
+	 * Save the folder tree to the store snapshot and empty the journal. 
+	 * Changes wait until both are done, since each is journaled while 
+	 * its folder is locked. The snapshot is replaced in one move, 
+	 * so a crash leaves either the old or the new snapshot 
+	 * @return snapshot with the amount of folders and files saved
+	 * @throws IOException if the snapshot can not be written
+	 */
+	private Snapshot checkpoint() throws IOException {
+		folders.readLockAll(); 
+		try {
+			Snapshot snapshot = Snapshot.save(folders, snapshotPath, journal.getSequence()); 
+			journal.reset(); 
+			return snapshot; 
+		}finally {
+			folders.readUnlockAll(); 
+		}
+	}
+	
+	/**
+	 * Record a change to the selected folder in the journal, 
+	 * if folders are kept in a store 
+	 * @param op change made 
+	 * @param name name of the folder or file made or changed 
+	 * @param text text of the change 
+	 */
+	private void record(Journal.Op op, String name, String text) {
+		if(journal != null) {
+			journal.append(op, getSelectedFolder().getLocationString(), name, text); 
+		}
+	}
+	
+	/**
+	 * Write journaled changes to disk, then flush output, 
+	 * so no result is shown for a change that could be lost 
+	 */
+	private void flush() {
+		if(journal != null) {
+			try {
+				journal.sync(); 
+			}catch (IOException e) {
+				out.println("Unable to write journal, " + e.getMessage()); 
+			}
+		}
+		if(recording != null) {
+			try {
+				recording.flush(); 
+			}catch (IOException e) {
+				recording = null; 
+				out.println("Unable to record, " + e.getMessage()); 
+			}
+		}
+		out.flush(); 
+	}
+	
+	/**
+	 * Read the next line of input, showing a prompt first when interactive. 
+	 * Output is flushed before waiting on the user, or every BATCH_SIZE 
+	 * inputs when not interactive
+	 * @param prompt prompt to show 
+	 * @return line read, null if there is no more input
+	 */
+	private String readInput(String prompt) {
+		if(interactive) {
+			out.print(prompt); 
+			flush(); 
+		}else if(inputCount % BATCH_SIZE == 0) {
+			flush(); 
+		}
+		try {
+			String line = in.readLine(); 
+			if(line != null) {
+				inputCount ++; 
+				recordInput(line); 
+			}
+			return line; 
+		}catch (IOException e) {
+			return null; 
+		}
 	}
 	
 	/**
@@ -56,6 +388,24 @@ public class CommandLine {
 		return selectedFolder;
 	}
 
+	/**
+	 * Get the read lock of the selected folder, 
+	 * held while looking at its children and files 
+	 * @return read lock of selected folder
+	 */
+	private Lock readLock() {
+		return folders.getLock(getSelectedFolder()).readLock(); 
+	}
+	
+	/**
+	 * Get the write lock of the selected folder, 
+	 * held while changing its children and files 
+	 * @return write lock of selected folder
+	 */
+	private Lock writeLock() {
+		return folders.getLock(getSelectedFolder()).writeLock(); 
+	}
+	
 	/**
 	 * Changes the selected folder
 	 * @param selectedFolder folder node to set as selected 
@@ -65,30 +415,22 @@ public class CommandLine {
 	}
 	
 	/**
-	 * remove and return the last input written
-	 * adds input to nextCommands
-	 * @return last command ran
+	 * Keep the command history in a memory mapped file, 
+	 * starting with the commands already in it 
+	 * @param path history file, created if it does not exist 
+	 * @param capacity most commands kept 
+	 * @throws IOException if the file can not be read or written 
 	 */
-	private String popLastCommand() {
-		if(previousCommands.isEmpty()) {
-			return null; 
-		}else {
-			nextCommands.push(previousCommands.peek());
-			return previousCommands.pop(); 
-		}
-		
+	public void openHistory(Path path, int capacity) throws IOException {
+		history = CommandHistory.open(path, capacity); 
 	}
 	
 	/**
-	 * Remove and return the last input that has been redone
-	 * @return last command erased 
+	 * Get the history of commands run 
+	 * @return command history
 	 */
-	private String redoCommand() {
-		if(nextCommands.isEmpty()) {
-			return null; 
-		}else {
-			return nextCommands.pop(); 
-		}
+	public CommandHistory getHistory() {
+		return history; 
 	}
 	
 	/**
@@ -105,7 +447,15 @@ public class CommandLine {
 		commands.put("ll", new ListChildren()); 
 		commands.put("par", new GoToParent()); 
 		commands.put("mkfil", new MakeFile()); 
-		commands.put("edit", new FileEditor()); 
+		editor = new FileEditor(); 
+		commands.put("edit", editor); 
+		commands.put("hist", new HistoryFootprint()); 
+		commands.put("stats", new ShowStats()); 
+		commands.put("du", new DiskUsage()); 
+		commands.put("grep", new GrepFiles()); 
+		commands.put("search", new SearchFiles()); 
+		commands.put("save", new SaveSnapshot()); 
+		commands.put("load", new LoadSnapshot()); 
 	}
 	
 	/**
@@ -119,19 +469,39 @@ public class CommandLine {
 	/**
 	 * Given a string input run command or inform 
 	 * user that command does not exist. 
-	 * Adds command to history. 
+	 * Adds command to history, unless it is back or redo, 
+	 * which move through the history instead. 
 	 * @param input command information to run 
 	 */
 	private void executeInput(String input) {
-		previousCommands.push(input);
 		String com = getCommand(input); 
 		String info = getInfo(input);
+		Command command = commands.get(com); 
+		if(!(command instanceof Back || command instanceof Next)) {
+			history.push(input);
+		}
 		
-		if(commands.containsKey(com)) {
-			commands.get(com).execute(info, this);
+		//a command run again by back or redo is timed on its own and inside the outer command
+		boolean outerFailed = failed; 
+		failed = false; 
+		long start = System.nanoTime(); 
+		if(command != null) {
+			command.execute(info, this);
+			CommandMetrics.record(com, System.nanoTime() - start, failed); 
 		}else {
-			System.out.println("COMMAND NOT FOUND"); 
+			error("COMMAND NOT FOUND"); 
+			CommandMetrics.record(CommandMetrics.UNKNOWN, System.nanoTime() - start, true); 
 		}
+		failed |= outerFailed; 
+	}
+	
+	/**
+	 * Show an error message and count the running command as failed 
+	 * @param message message to show 
+	 */
+	private void error(String message) {
+		out.println(message); 
+		failed = true; 
 	}
 	
 	/**
@@ -178,22 +548,148 @@ public class CommandLine {
 	
 	/**
 	 * Display current folder location, 
-	 * gets inputs from user and executes it
+	 * gets inputs from user and executes it. 
+	 * While a file is being edited, the input goes to the editor instead
 	 */
 	public void getNextInput() {
-		Scanner s = new Scanner(System.in); 
-		System.out.print(getSelectedFolder().getLocationString() + "/");
-		String input = s.nextLine(); 
-		executeInput(input); 
+		if(editor.active) {
+			String input = readInput(editor.prompt()); 
+			if(input == null) {
+				editor.exit(); 
+				Exit(); 
+			}else {
+				editor.handle(input); 
+			}
+			return; 
+		}
+		if(interactive) {
+			out.print(getSelectedFolder().getLocationString());
+		}
+		String input = readInput("/"); 
+		if(input == null) {
+			Exit(); 
+		}else {
+			executeInput(input); 
+		}
 	}
 	
 	/**
-	 * Create and run the command line	
-	 * @param args
+	 * Create and run the command line. 
+	 * With -b, runs commands from the file given after it, or from 
+	 * standard input if no file is given, without prompts 
+	 * and prints how many inputs ran per second at the end. 
+	 * With -d, keeps folders and files in the directory given after it, 
+	 * and -f sets when the journal is forced to disk: 
+	 * command (default), none, or a number of milliseconds. 
+	 * With -c, folders keep their children in copy-on-write lists. 
+	 * With -s, serves a session to every connection on the port given after it 
+	 * (4040 if none) of the loopback address, all sharing one folder tree; 
+	 * -m sets the most connections and -i the seconds a connection may be idle. 
+	 * With -r, adds every input to the file given after it, to be replayed later. 
+	 * With -h, keeps the command history in the file given after it, 
+	 * so back and redo reach commands from earlier runs; 
+	 * -l sets the most commands the history keeps. 
+	 * @param args -b and optional script file for batch mode, 
+	 * -d and store directory, -f and force policy, -c for copy-on-write, 
+	 * -s and optional port for server mode, -m and connection limit, -i and idle seconds, 
+	 * -r and recording file, -h and history file, -l and history capacity
 	 */
-	public static void main(String[] args) {
-		CommandLine cl = new CommandLine(); 
+	public static void main(String[] args) throws IOException {
+		boolean batch = false; 
+		String script = null; 
+		String directory = null; 
+		Journal.Policy policy = Journal.Policy.COMMAND; 
+		long intervalMillis = 0; 
+		boolean serve = false; 
+		int port = TerminalServer.DEFAULT_PORT; 
+		int maxConnections = TerminalServer.DEFAULT_MAX_CONNECTIONS; 
+		long idleMillis = TerminalServer.DEFAULT_IDLE_MILLIS; 
+		String recordFile = null; 
+		String historyFile = null; 
+		int historyCapacity = CommandHistory.DEFAULT_CAPACITY; 
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-b")) {
+				batch = true; 
+				if(i + 1 < args.length && !args[i + 1].startsWith("-")) {
+					script = args[++i]; 
+				}
+			}else if(args[i].equals("-c")) {
+				ChildListFactory.setKind(ChildListFactory.Kind.COPY_ON_WRITE); 
+			}else if(args[i].equals("-d") && i + 1 < args.length) {
+				directory = args[++i]; 
+			}else if(args[i].equals("-f") && i + 1 < args.length) {
+				String force = args[++i]; 
+				if(force.equals("none")) {
+					policy = Journal.Policy.NONE; 
+				}else if(!force.equals("command")) {
+					policy = Journal.Policy.INTERVAL; 
+					intervalMillis = Long.parseLong(force); 
+				}
+			}else if(args[i].equals("-s")) {
+				serve = true; 
+				if(i + 1 < args.length && !args[i + 1].startsWith("-")) {
+					port = Integer.parseInt(args[++i]); 
+				}
+			}else if(args[i].equals("-m") && i + 1 < args.length) {
+				maxConnections = Integer.parseInt(args[++i]); 
+			}else if(args[i].equals("-i") && i + 1 < args.length) {
+				idleMillis = Long.parseLong(args[++i]) * 1000; 
+			}else if(args[i].equals("-r") && i + 1 < args.length) {
+				recordFile = args[++i]; 
+			}else if(args[i].equals("-h") && i + 1 < args.length) {
+				historyFile = args[++i]; 
+			}else if(args[i].equals("-l") && i + 1 < args.length) {
+				historyCapacity = Integer.parseInt(args[++i]); 
+			}
+		}
+		
+		if(serve) {
+			CommandLine owner = new CommandLine(new StringReader(""), Writer.nullWriter(), false); 
+			if(directory != null) {
+				owner.openStore(Paths.get(directory), policy, intervalMillis);
+			}
+			int workers = Math.max(4, 2 * Runtime.getRuntime().availableProcessors()); 
+			try(TerminalServer server = new TerminalServer(owner.folders, owner, maxConnections, idleMillis, workers)) {
+				server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+				System.out.println("Serving sessions on port " + server.getAddress().getPort()); 
+				server.run();
+			}finally {
+				if(owner.journal != null) {
+					owner.journal.close(); 
+				}
+			}
+			return; 
+		}
+		
+		CommandLine cl; 
+		if(batch) {
+			Reader input; 
+			if(script != null) {
+				input = new FileReader(script); 
+			}else {
+				input = new InputStreamReader(System.in); 
+			}
+			cl = new CommandLine(input, new OutputStreamWriter(System.out), false); 
+		}else {
+			cl = new CommandLine(); 
+		}
+		if(directory != null) {
+			cl.openStore(Paths.get(directory), policy, intervalMillis);
+		}
+		if(historyFile != null) {
+			cl.openHistory(Paths.get(historyFile), historyCapacity); 
+		}else if(historyCapacity != CommandHistory.DEFAULT_CAPACITY) {
+			cl.history = new CommandHistory(historyCapacity); 
+		}
+		Writer recording = null; 
+		if(recordFile != null) {
+			recording = new BufferedWriter(new FileWriter(recordFile, true)); 
+			cl.recordTo(recording);
+		}
 		cl.RunCommandLine();
+		if(recording != null) {
+			recording.close(); 
+		}
 	}
 
 	/**
@@ -202,17 +698,19 @@ public class CommandLine {
 	private class GoToFolder implements Command{
 		
 		/**
-		 * Given a folder name, set selected folder to it 
-		 * if it is a child of the current selection. If it 
-		 * is not a child, inform the user.
-		 * @param command folder name to locate
+		 * Given a folder path, set selected folder to the folder it leads to. 
+		 * The path can be a child name, several names separated by "/", 
+		 * can use ".." for a parent and can start with "/" to begin at the root. 
+		 * If the folder does not exist, inform the user.
+		 * @param command folder path to locate
 		 * @param cl command line to select folder
 		 */
 		public void execute (String command,CommandLine cl) {
-			if(cl.getSelectedFolder().hasFolder(command)) {
-				cl.setSelectedFolder(cl.getSelectedFolder().getFolder(command));
+			FolderTreeNode folder = cl.folders.findFolder(cl.getSelectedFolder(), command); 
+			if(folder != null) {
+				cl.setSelectedFolder(folder);
 			}else {
-				System.out.println("FOLDER NOT FOUND"); 
+				error("FOLDER NOT FOUND"); 
 			}	
 		}
 		
@@ -221,7 +719,7 @@ public class CommandLine {
 		 * @return function and usage of command
 		 */
 		public String info() {
-			return "Changes the current the current folder to a child of selected folder";
+			return "Changes the current folder to the folder at a path, such as child, a/b/c, ../sibling or /a from root";
 		}
 	}
 	
@@ -238,7 +736,7 @@ public class CommandLine {
 		 */
 		public void execute (String command,CommandLine cl) {
 			if(cl.getSelectedFolder().getParent() == null) {
-				System.out.println("Parent Does not Exist"); 
+				error("Parent Does not Exist"); 
 			}else {
 				cl.setSelectedFolder(cl.getSelectedFolder().getParent());
 			}
@@ -265,20 +763,39 @@ public class CommandLine {
 		 * folders that are children in the folder tree
 		 */
 		public void execute (String command,CommandLine cl) {
-			//displays files 
-			Iterator<File> fileIter = cl.getSelectedFolder().getValue().getFileIterator(); 
-			
-			while(fileIter.hasNext()) {
-				System.out.println(fileIter.next()); 
+			FolderTreeNode selected = cl.getSelectedFolder(); 
+			boolean lockFree = selected.hasConcurrentChildren(); 
+			Lock lock = cl.readLock(); 
+			lock.lock(); 
+			try {
+				//displays files 
+				Iterator<File> fileIter = selected.getValue().getFileIterator(); 
+				
+				while(fileIter.hasNext()) {
+					out.println(fileIter.next()); 
+				}
+				
+				if(!lockFree) {
+					displayChildren(selected); 
+				}
+			}finally {
+				lock.unlock(); 
 			}
-			
-			//displays children 
-			Iterator<FolderTreeNode> nodeIter = cl.getSelectedFolder().getIterable();
+			if(lockFree) {
+				displayChildren(selected); 
+			}
+		}
+		
+		/**
+		 * Displays the children of a folder
+		 * @param node node of folder
+		 */
+		private void displayChildren(FolderTreeNode node) {
+			Iterator<FolderTreeNode> nodeIter = node.getIterable();
 			
 			while (nodeIter.hasNext()){
-				System.out.println(nodeIter.next()); 
+				out.println(nodeIter.next()); 
 			}
-			
 		}
 		/**
 		 * Provides an explanation of function of command
@@ -289,6 +806,68 @@ public class CommandLine {
 		}
 	}
 	
+	/**
+	 * Shows how much is stored in a folder and the folders below it
+	 * @author fiona
+	 *
+	 */
+	private class DiskUsage implements Command{
+		
+		/**
+		 * Display the bytes of text, files and folders in each child of 
+		 * a folder and everything below it, followed by the same for the folder. 
+		 * With -s only the folder is displayed. The folder is the selected one, 
+		 * or the one a path given after the option leads to. 
+		 * Totals are kept up to date as the tree changes, so this does not walk the tree. 
+		 * If the folder does not exist inform user
+		 * @param command optional -s followed by optional folder path
+		 * @param cl command line to execute command
+		 */
+		public void execute (String command,CommandLine cl) {
+			String path = command.trim(); 
+			boolean summary = path.equals("-s") || path.startsWith("-s "); 
+			if(summary) {
+				path = path.substring(2).trim(); 
+			}
+			FolderTreeNode folder = path.isEmpty() ? cl.getSelectedFolder() : cl.folders.findFolder(cl.getSelectedFolder(), path); 
+			if(folder == null) {
+				error("FOLDER NOT FOUND"); 
+				return; 
+			}
+			if(!summary) {
+				FolderTreeNode[] children; 
+				Lock lock = cl.folders.getLock(folder).readLock(); 
+				lock.lock(); 
+				try {
+					children = folder.children.toArray(); 
+				}finally {
+					lock.unlock(); 
+				}
+				for(FolderTreeNode child: children) {
+					display(child); 
+				}
+			}
+			display(folder); 
+		}
+		
+		/**
+		 * Display the totals of a folder and its location
+		 * @param node node of folder
+		 */
+		private void display(FolderTreeNode node) {
+			out.println(String.format("%12d bytes %9d files %9d folders  %s", node.getTotalBytes(), node.getTotalFiles(), 
+					node.getTotalFolders(), node.getLocationString())); 
+		}
+		
+		/**
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
+		 */
+		public String info() {
+			return "Shows bytes of text, files and folders in each child of the selected folder or a path, then in the folder itself. du -s shows only the folder.";
+		}
+	}
+	
 	/**
 	 * Creates a new folder and add it a child of selected
 	 * @author fiona
@@ -305,15 +884,23 @@ public class CommandLine {
 		 * @param command line to execute command
 		 */
 		public void execute (String command,CommandLine cl) {
-			if(cl.getSelectedFolder().hasFolder(command)) {
-				System.out.println("Unable to make folder, " + command + " already exists");
-			}else if(command == "") {
-				System.out.println("Unable to make folder, " + command + " folder name needed");
-			}
-			else {
-				cl.getSelectedFolder().addNewFolder(command); 
+			Lock lock = cl.writeLock(); 
+			lock.lock(); 
+			try {
+				if(cl.getSelectedFolder().hasFolder(command)) {
+					error("Unable to make folder, " + command + " already exists");
+				}else if(command == "") {
+					error("Unable to make folder, " + command + " folder name needed");
+				}else if(command.contains(FolderTree.SEPARATOR) || command.equals(FolderTree.PARENT) || command.equals(FolderTree.CURRENT)) {
+					error("Unable to make folder, " + command + " is not a valid folder name");
+				}
+				else {
+					cl.getSelectedFolder().addNewFolder(command); 
+					cl.record(Journal.Op.MKDIR, command, ""); 
+				}
+			}finally {
+				lock.unlock(); 
 			}
-				
 		}
 		
 		/**
@@ -341,15 +928,21 @@ public class CommandLine {
 		 */
 		public void execute (String command,CommandLine cl) {
 			Folder selected = cl.getSelectedFolder().getValue(); 
-			if(selected.hasFile(command)) {
-				System.out.println("Unable to make file, " + command + " already exists");
-			}else if(command == "") {
-				System.out.println("Unable to make file, " + command + " file name needed");
-			}
-			else {
-				selected.addFile(command); 
+			Lock lock = cl.writeLock(); 
+			lock.lock(); 
+			try {
+				if(selected.hasFile(command)) {
+					error("Unable to make file, " + command + " already exists");
+				}else if(command == "") {
+					error("Unable to make file, " + command + " file name needed");
+				}
+				else {
+					selected.addFile(command); 
+					cl.record(Journal.Op.MKFIL, command, ""); 
+				}
+			}finally {
+				lock.unlock(); 
 			}
-				
 		}
 		
 		/**
@@ -361,142 +954,532 @@ public class CommandLine {
 		}
 	}
 	/**
-	 * Edit a selected file
+	 * Edit a selected file. 
+	 * Editor commands are kept in their own map, like the commands of the 
+	 * command line. After each change the editor echoes the whole file, 
+	 * only its last lines, or nothing, depending on its mode 
 	 * @author fiona
 	 *
 	 */
 	private class FileEditor implements Command{
 		boolean active = false; 
+		File file; 
+		HashMap<String, Command> editorCommands; 
+		EchoMode mode = EchoMode.FULL; 
+		int tailLines = 1; 
+		StringBuilder pasted; 
+		
+		/**
+		 * Create the editor and its commands 
+		 */
+		FileEditor() {
+			editorCommands = new LinkedHashMap<String, Command>(); 
+			editorCommands.put("set", new SetText()); 
+			editorCommands.put("add", new AddLine()); 
+			editorCommands.put("paste", new PasteLines()); 
+			editorCommands.put("undo", new UndoEdit()); 
+			editorCommands.put("redo", new RedoEdit()); 
+			editorCommands.put("display", new DisplayText()); 
+			editorCommands.put("clear", new ClearText()); 
+			editorCommands.put("mode", new SetMode()); 
+			editorCommands.put("help", new EditorHelp()); 
+			editorCommands.put("exit", new ExitEditor()); 
+		}
 		
 		/**
 		 * If file exists in current folder, 
-		 * start file editing loop. 
+		 * send the following inputs to the editor until it exits. 
 		 * Otherwise inform user and exit command. 
 		 * @param command name of file to edit 
 		 * @param cl command line to execute command 
 		 */
 		public void execute (String command,CommandLine cl) {
 			Folder selected = cl.getSelectedFolder().getValue(); 
-			if(!selected.hasFile(command)) {
-				System.out.println("Unable to edit file, " + command + " does not exists");
+			File file; 
+			Lock lock = cl.readLock(); 
+			lock.lock(); 
+			try {
+				file = selected.getFile(command); 
+			}finally {
+				lock.unlock(); 
+			}
+			if(file == null) {
+				error("Unable to edit file, " + command + " does not exists");
 			}
 			else {
-				editFile(selected.getFile(command)); 
+				open(file); 
 			}
 				
 		}
 		
 		/**
-		 * Print out the list of available commands 
+		 * Start editing a file 
+		 * @param file file to edit
 		 */
-		private void help() {
-			System.out.println("set: set the text value"); 
-			System.out.println("add: add line to file"); 
-			System.out.println("undo: bring back last version of file");
-			System.out.println("redo: redo line that had been erased"); 
-			System.out.println("exit: leave file editor"); 
-			System.out.println("help: display available commands"); 
-			System.out.println("display: display text file");
-			System.out.println("clear: clear text file and erase history");
+		private void open(File file) {
+			this.file = file; 
+			active = true; 
 		}
 		
 		/**
-		 * Display the text in a file
-		 * @param file file to display text
+		 * Get the prompt shown before the next editor input 
+		 * @return ">" while pasting lines, otherwise "*"
 		 */
-		private void display(File file) {
-			System.out.println(file.getText()); 
+		private String prompt() {
+			return pasted != null ? ">" : "*"; 
 		}
+		
 		/**
-		 * Set the text of file to text given, 
-		 * adds new line on end. Display results
-		 * @param text text to set file to 
-		 * @param file file to set text on 
+		 * Show the file after a change as the mode asks: 
+		 * the whole text, the last lines or nothing 
 		 */
-		private void set(String text, File file) {
-			file.setText(text + "\n");
-			System.out.println(file.getText()); 
+		private void echo() {
+			if(mode == EchoMode.FULL) {
+				out.println(file.getText()); 
+			}else if(mode == EchoMode.TAIL) {
+				String tail = file.tail(tailLines); 
+				out.print(tail); 
+				if(!tail.endsWith("\n")) {
+					out.println(); 
+				}
+			}
 		}
 		
 		/**
-		 * Add a line of text to a given file, 
-		 * displays results
-		 * @param text line to add
-		 * @param file file to add to
+		 * Add text to the end of the file and journal it 
+		 * @param text text to add
 		 */
-		private void add(String text, File file) {
-			file.addText(text + "\n");
-			System.out.println(file.getText()); 
+		private void append(String text) {
+			Lock lock = writeLock(); 
+			lock.lock(); 
+			try {
+				file.addText(text);
+				record(Journal.Op.ADD, file.getFileName(), text); 
+			}finally {
+				lock.unlock(); 
+			}
+			echo(); 
 		}
 		
 		/**
-		 * Restore a previous version of a file, 
-		 * displays results
-		 * @param file file to undo
+		 * Exit file editor, dropping any lines being pasted 
 		 */
-		private void undo (File file) {
-			file.undo();
-			System.out.println(file.getText()); 
+		private void exit() {
+			active = false; 
+			pasted = null; 
 		}
 		
 		/**
-		 * Restore a version that was erased 
-		 * @param file file to redo
+		 * Execute one editor command on the file being edited, 
+		 * or while pasting add the input to the lines pasted 
+		 * @param input editor command and its text
 		 */
-		private void redo (File file) {
-			 file.redo();
-			 System.out.println(file.getText()); 
+		private void handle(String input) {
+			if(pasted != null) {
+				paste(input); 
+				return; 
+			}
+			String com = getCommand(input);
+			String info = getInfo(input); 
+			failed = false; 
+			long start = System.nanoTime(); 
+			
+			Command command = editorCommands.get(com); 
+			if(command != null) {
+				command.execute(info, CommandLine.this); 
+			}else {
+				error("COMMAND NOT FOUND"); 
+				com = CommandMetrics.UNKNOWN; 
+			}
+			CommandMetrics.record("*" + com, System.nanoTime() - start, failed); 
 		}
 		
 		/**
-		 * Exit file editor
+		 * Take one line while pasting. A line holding only "." ends the paste 
+		 * and adds every line pasted to the file as one change 
+		 * @param line line pasted
 		 */
-		private void exit() {
-			active = false; 
+		private void paste(String line) {
+			if(!line.equals(".")) {
+				pasted.append(line).append("\n"); 
+				return; 
+			}
+			failed = false; 
+			long start = System.nanoTime(); 
+			String text = pasted.toString(); 
+			pasted = null; 
+			if(!text.isEmpty()) {
+				append(text); 
+			}
+			CommandMetrics.record("*paste", System.nanoTime() - start, failed); 
 		}
 		
 		/**
-		 * Erase text and clear history of a file
-		 * @param file file to clear
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
 		 */
-		private void clear(File file) {
-			file.clear();
+		public String info() {
+			return "Edit a selected file";
 		}
 		
 		/**
-		 * While editor is active, get input from user 
-		 * and executes commands 
-		 * @param file
+		 * Editor command setting the text of the file 
 		 */
-		public void editFile(File file) {
-			active = true; 
-			Scanner s = new Scanner(System.in); 
-			while (active) {
-				System.out.print("*"); 
-				String input = s.nextLine(); 
-				String com = getCommand(input);
-				String info = getInfo(input); 
-				
-				if(com.equals("help")) {
-					help();
-				}else if (com.equals("set")) {
-					set(info, file); 
-				}else if (com.equals("add")) {
-					add(info, file); 
-				}else if (com.equals("undo")) {
-					undo(file); 
-				}else if (com.equals("redo")) {
-					redo(file); 
-				}else if (com.equals("exit")) {
-					exit(); 
-				}else if (com.equals("display")) {
-					display(file); 
-				}else if (com.equals("clear")) {
-					clear(file); 
+		private class SetText implements Command{
+			
+			/**
+			 * Set the text of the file to text given, 
+			 * adds new line on end. Display results
+			 * @param command text to set file to 
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				Lock lock = writeLock(); 
+				lock.lock(); 
+				try {
+					file.setText(command + "\n");
+					record(Journal.Op.SET, file.getFileName(), command + "\n"); 
+				}finally {
+					lock.unlock(); 
+				}
+				echo(); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "set the text value"; 
+			}
+		}
+		
+		/**
+		 * Editor command adding a line to the file 
+		 */
+		private class AddLine implements Command{
+			
+			/**
+			 * Add a line of text to the file, 
+			 * displays results
+			 * @param command line to add
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				append(command + "\n"); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "add line to file"; 
+			}
+		}
+		
+		/**
+		 * Editor command pasting many lines as one change 
+		 */
+		private class PasteLines implements Command{
+			
+			/**
+			 * Start taking the following inputs as lines to add, 
+			 * until a line holding only "." 
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				pasted = new StringBuilder(); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "add the following lines as one change, up to a line holding only ."; 
+			}
+		}
+		
+		/**
+		 * Editor command undoing the last change 
+		 */
+		private class UndoEdit implements Command{
+			
+			/**
+			 * Restore a previous version of the file, 
+			 * displays results
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				Lock lock = writeLock(); 
+				lock.lock(); 
+				try {
+					//the edit history is not kept in snapshots, so journal the text it led to
+					if(file.undo()) {
+						record(Journal.Op.SET, file.getFileName(), file.getText()); 
+					}
+				}finally {
+					lock.unlock(); 
+				}
+				echo(); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "bring back last version of file"; 
+			}
+		}
+		
+		/**
+		 * Editor command redoing the last undone change 
+		 */
+		private class RedoEdit implements Command{
+			
+			/**
+			 * Restore a version that was erased, 
+			 * displays results
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				Lock lock = writeLock(); 
+				lock.lock(); 
+				try {
+					//the edit history is not kept in snapshots, so journal the text it led to
+					if(file.redo()) {
+						record(Journal.Op.SET, file.getFileName(), file.getText()); 
+					}
+				}finally {
+					lock.unlock(); 
+				}
+				echo(); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "redo line that had been erased"; 
+			}
+		}
+		
+		/**
+		 * Editor command displaying the whole file 
+		 */
+		private class DisplayText implements Command{
+			
+			/**
+			 * Display the text in the file, whatever the mode 
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				out.println(file.getText()); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "display text file"; 
+			}
+		}
+		
+		/**
+		 * Editor command clearing the file 
+		 */
+		private class ClearText implements Command{
+			
+			/**
+			 * Erase text and clear history of the file
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				Lock lock = writeLock(); 
+				lock.lock(); 
+				try {
+					file.clear();
+					record(Journal.Op.CLEAR, file.getFileName(), ""); 
+				}finally {
+					lock.unlock(); 
+				}
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "clear text file and erase history"; 
+			}
+		}
+		
+		/**
+		 * Editor command choosing what is echoed after a change 
+		 */
+		private class SetMode implements Command{
+			
+			/**
+			 * Set the echo mode: full shows the whole file, quiet shows nothing 
+			 * and tail shows the last lines, one or the amount given. 
+			 * With no mode given show the current one. 
+			 * If the mode or amount is not valid inform user 
+			 * @param command full, quiet, or tail and optional amount of lines
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				String[] parts = command.trim().split("\\s+"); 
+				if(parts[0].isEmpty()) {
+					out.println(mode == EchoMode.TAIL ? "tail " + tailLines : mode.toString().toLowerCase()); 
+					return; 
+				}
+				EchoMode chosen; 
+				try {
+					chosen = EchoMode.valueOf(parts[0].toUpperCase()); 
+				}catch (IllegalArgumentException e) {
+					error("Unable to set mode, " + parts[0] + " is not full, quiet or tail"); 
+					return; 
+				}
+				int lines = 1; 
+				if(parts.length > 1) {
+					try {
+						lines = Integer.parseInt(parts[1]); 
+					}catch (NumberFormatException e) {
+						lines = 0; 
+					}
+					if(chosen != EchoMode.TAIL || lines < 1) {
+						error("Unable to set mode, " + command + " is not valid"); 
+						return; 
+					}
+				}
+				mode = chosen; 
+				tailLines = lines; 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "echo after each change: full file, quiet for nothing, or tail and amount of last lines"; 
+			}
+		}
+		
+		/**
+		 * Editor command listing the editor commands 
+		 */
+		private class EditorHelp implements Command{
+			
+			/**
+			 * Print out the list of available commands 
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				for(String key: editorCommands.keySet()) {
+					out.println(key + ": " + editorCommands.get(key).info()); 
+				}
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "display available commands"; 
+			}
+		}
+		
+		/**
+		 * Editor command leaving the editor 
+		 */
+		private class ExitEditor implements Command{
+			
+			/**
+			 * Exit file editor
+			 * @param command not used
+			 * @param cl command line editing the file
+			 */
+			public void execute (String command,CommandLine cl) {
+				exit(); 
+			}
+			
+			/**
+			 * Provides an explanation of function of command
+			 * @return function and usage of command
+			 */
+			public String info() {
+				return "leave file editor"; 
+			}
+		}
+	}
+	
+	/**
+	 * Shows how much undo and redo history files hold
+	 * @author fiona
+	 *
+	 */
+	private class HistoryFootprint implements Command{
+		
+		/**
+		 * Display the history footprint of a file in the selected folder, 
+		 * or of every file in it if no name is given, 
+		 * followed by the memory used by all histories. 
+		 * If the file does not exist inform user. 
+		 * @param command name of file, or empty for all files 
+		 * @param cl command line to execute command
+		 */
+		public void execute (String command,CommandLine cl) {
+			Folder selected = cl.getSelectedFolder().getValue(); 
+			Lock lock = cl.readLock(); 
+			lock.lock(); 
+			try {
+				if(command.isEmpty()) {
+					Iterator<File> fileIter = selected.getFileIterator(); 
+					while(fileIter.hasNext()) {
+						display(fileIter.next()); 
+					}
+				}else if(selected.hasFile(command)) {
+					display(selected.getFile(command)); 
 				}else {
-					System.out.println("COMMAND NOT FOUND"); 
+					error("Unable to show history, " + command + " does not exists");
+					return; 
 				}
+			}finally {
+				lock.unlock(); 
 			}
+			out.println("all histories: " + HistoryBudget.getTotalBytes() + " of " 
+					+ HistoryBudget.getGlobalBudget() + " bytes in memory, " 
+					+ HistoryBudget.getFileBudget() + " bytes per file, " 
+					+ HistoryBudget.getPolicy().toString().toLowerCase() + " when full"); 
+		}
+		
+		/**
+		 * Display the undo and redo history footprint of a file
+		 * @param file file to display
+		 */
+		private void display(File file) {
+			out.println(file + ": undo " + describe(file.getUndoHistory()) + "; redo " + describe(file.getRedoHistory())); 
+		}
+		
+		/**
+		 * Describe where the versions of a history are kept
+		 * @param history history to describe
+		 * @return versions and bytes in memory, spilled and dropped
+		 */
+		private String describe(EditHistory history) {
+			return history.memoryCount() + " versions (" + history.getBytes() + " bytes) in memory, " 
+					+ history.spilledCount() + " versions (" + history.getSpilledBytes() + " bytes) spilled, " 
+					+ history.droppedCount() + " dropped"; 
 		}
 		
 		/**
@@ -504,7 +1487,271 @@ public class CommandLine {
 		 * @return function and usage of command
 		 */
 		public String info() {
-			return "Edit a selected file";
+			return "Shows memory used by undo history of a file, or of all files in selected folder.";
+		}
+	}
+	
+	/**
+	 * Shows how often each command ran, how often it failed and how long it took
+	 * @author fiona
+	 *
+	 */
+	private class ShowStats implements Command{
+		
+		/**
+		 * With no argument, display calls, errors and times of every command 
+		 * run so far by any session, and the size of the tree's location index. "reset" forgets them. "dump" and a file path 
+		 * adds them to the file as text, and every given amount of seconds 
+		 * if a number follows the path. "dump off" stops dumping. 
+		 * Shared sessions, such as those of a server, can not dump to a file. 
+		 * If the arguments can not be used, inform user 
+		 * @param command empty, reset, dump and a path with optional seconds, or dump off
+		 * @param cl command line to execute command
+		 */
+		public void execute (String command,CommandLine cl) {
+			String[] words = command.trim().split("\\s+"); 
+			if(command.trim().isEmpty()) {
+				out.print(CommandMetrics.table()); 
+				long folders = Math.max(1, cl.folders.size()); 
+				out.println("location index: " + cl.folders.size() + " folders, about " + cl.folders.indexBytes() 
+						+ " bytes, " + cl.folders.indexBytes() / folders + " per folder"); 
+				if(CommandMetrics.getDumpPath() != null) {
+					out.println("dumping to " + CommandMetrics.getDumpPath()); 
+				}else if(CommandMetrics.getDumpError() != null) {
+					out.println("dumping stopped, " + CommandMetrics.getDumpError()); 
+				}
+			}else if(words[0].equals("reset") && words.length == 1) {
+				CommandMetrics.reset(); 
+				out.println("Stats reset"); 
+			}else if(words[0].equals("dump") && words.length == 2 && words[1].equals("off")) {
+				CommandMetrics.stopDumping(); 
+				out.println("Stopped dumping stats"); 
+			}else if(words[0].equals("dump") && (words.length == 2 || words.length == 3)) {
+				if(cl.driven) {
+					error("Unable to dump stats, shared sessions can not write files"); 
+					return; 
+				}
+				try {
+					Path path = Paths.get(words[1]); 
+					if(words.length == 2) {
+						CommandMetrics.dumpTo(path); 
+						out.println("Dumped stats to " + path); 
+					}else {
+						long seconds = Long.parseLong(words[2]); 
+						if(seconds <= 0) {
+							error("Unable to dump stats, seconds must be more than 0"); 
+							return; 
+						}
+						CommandMetrics.dumpEvery(path, seconds); 
+						out.println("Dumping stats to " + path + " every " + seconds + " seconds"); 
+					}
+				}catch (IOException | InvalidPathException e) {
+					error("Unable to dump stats, " + e.getMessage()); 
+				}catch (NumberFormatException e) {
+					error("Unable to dump stats, " + words[2] + " is not a number of seconds"); 
+				}
+			}else {
+				error("Unable to show stats, use stats, stats reset, stats dump <file> [seconds] or stats dump off"); 
+			}
+		}
+		
+		/**
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
+		 */
+		public String info() {
+			return "Shows calls, errors and times of each command and the memory of the location index. stats reset clears them, stats dump <file> [seconds] adds them to a file, every given seconds if set, stats dump off stops.";
+		}
+	}
+	
+	/**
+	 * Finds lines matching a pattern in the files of a folder or a subtree
+	 * @author fiona
+	 *
+	 */
+	private class GrepFiles implements Command{
+		
+		/**
+		 * Display every line matching a regular expression in the files of the 
+		 * selected folder, or with -r of the selected folder and every folder 
+		 * below it, as the file's location, the line number and the line. 
+		 * Folders are searched in parallel but lines are shown in folder order. 
+		 * If no pattern is given or it is not valid inform user 
+		 * @param command optional -r followed by a regular expression
+		 * @param cl command line to execute command
+		 */
+		public void execute (String command,CommandLine cl) {
+			String regex = command; 
+			boolean recursive = regex.equals("-r") || regex.startsWith("-r "); 
+			if(recursive) {
+				regex = regex.substring(2).trim(); 
+			}
+			if(regex.isEmpty()) {
+				error("Unable to search, pattern needed"); 
+				return; 
+			}
+			Pattern pattern; 
+			try {
+				pattern = Grep.compile(regex); 
+			}catch (PatternSyntaxException e) {
+				error("Unable to search, " + e.getDescription() + " in " + regex); 
+				return; 
+			}
+			Grep grep = new Grep(cl.folders, pattern, ForkJoinPool.commonPool()); 
+			try {
+				grep.search(cl.getSelectedFolder(), recursive, line -> {
+					out.println(line); 
+					if(interactive) {
+						out.flush(); 
+					}
+				}); 
+			}catch (CompletionException e) {
+				error("Unable to search, " + e.getCause()); 
+			}
+		}
+		
+		/**
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
+		 */
+		public String info() {
+			return "Shows lines of files in the selected folder matching a regular expression, with -r also in every folder below it.";
+		}
+	}
+	
+	/**
+	 * Finds the files holding words using the tree's text index
+	 * @author fiona
+	 *
+	 */
+	private class SearchFiles implements Command{
+		
+		/**
+		 * Display the location of every file holding all the given words, 
+		 * or with OR between groups of words, any of the groups. 
+		 * The index is built the first time a tree is searched 
+		 * and updated as files change after that. 
+		 * If no words are given inform user 
+		 * @param command words to find, groups separated by OR
+		 * @param cl command line to execute command
+		 */
+		public void execute (String command,CommandLine cl) {
+			if(TextIndex.terms(command).isEmpty()) {
+				error("Unable to search, words needed"); 
+				return; 
+			}
+			boolean building = cl.folders.getTextIndex() == null; 
+			TextIndex index = cl.folders.textIndex(); 
+			if(building) {
+				out.println("Indexed " + index.files() + " files"); 
+			}
+			for(File file: index.search(command)) {
+				Folder folder = file.getFolder(); 
+				if(folder != null && folder.getNode() != null) {
+					out.println(folder.getNode().getLocationString() + "/" + file.getFileName()); 
+				}
+			}
+		}
+		
+		/**
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
+		 */
+		public String info() {
+			return "Shows files holding all the given words, or any group of words separated by OR.";
+		}
+	}
+	
+	/**
+	 * Saves the whole folder tree to a snapshot file
+	 * @author fiona
+	 *
+	 */
+	private class SaveSnapshot implements Command{
+		
+		/**
+		 * Save every folder and file to the given path. 
+		 * If no path is given, save to the store and empty its journal. 
+		 * If there is no store or the file can not be written, inform user. 
+		 * Shared sessions, such as those of a server, may only save to the store. 
+		 * @param command path of snapshot file
+		 * @param cl command line to save 
+		 */
+		public void execute (String command,CommandLine cl) {
+			if(command.isEmpty() && cl.journal == null) {
+				error("Unable to save, file path needed"); 
+				return; 
+			}
+			if(!command.isEmpty() && cl.driven) {
+				error("Unable to save, shared sessions can only save to the store"); 
+				return; 
+			}
+			try {
+				if(command.isEmpty()) {
+					Snapshot snapshot = cl.checkpoint(); 
+					out.println("Saved " + snapshot.getFolders() + " folders and " + snapshot.getFiles() + " files to store"); 
+					return; 
+				}
+				Snapshot snapshot = Snapshot.save(cl.folders, Paths.get(command)); 
+				out.println("Saved " + snapshot.getFolders() + " folders and " + snapshot.getFiles() + " files to " + command); 
+			}catch (IOException | InvalidPathException e) {
+				error("Unable to save, " + e.getMessage()); 
+			}
+		}
+		
+		/**
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
+		 */
+		public String info() {
+			return "Saves all folders and files to a snapshot file at the given path, or to the store if no path is given.";
+		}
+	}
+	
+	/**
+	 * Replaces the folder tree with one loaded from a snapshot file
+	 * @author fiona
+	 *
+	 */
+	private class LoadSnapshot implements Command{
+		
+		/**
+		 * Load the folders and files saved at the given path, 
+		 * replacing the current ones and selecting the root. 
+		 * If folders are kept in a store, the loaded ones are saved to it. 
+		 * If no path is given or the file can not be read, inform user 
+		 * and keep the current folders. 
+		 * @param command path of snapshot file
+		 * @param cl command line to load into
+		 */
+		public void execute (String command,CommandLine cl) {
+			if(command.isEmpty()) {
+				error("Unable to load, file path needed"); 
+				return; 
+			}
+			if(cl.driven) {
+				error("Unable to load, folders are shared with other sessions"); 
+				return; 
+			}
+			try {
+				Snapshot snapshot = new Snapshot(); 
+				cl.folders = Snapshot.load(Paths.get(command), snapshot); 
+				cl.setSelectedFolder(cl.folders.getRoot());
+				if(cl.journal != null) {
+					cl.checkpoint(); 
+				}
+				out.println("Loaded " + snapshot.getFolders() + " folders and " + snapshot.getFiles() + " files from " + command); 
+			}catch (IOException | InvalidPathException e) {
+				error("Unable to load, " + e.getMessage()); 
+			}
+		}
+		
+		/**
+		 * Provides an explanation of function of command
+		 * @return function and usage of command
+		 */
+		public String info() {
+			return "Replaces all folders and files with those in a snapshot file at the given path.";
 		}
 	}
 	
@@ -520,7 +1767,7 @@ public class CommandLine {
 		 */
 		public void execute (String command,CommandLine cl) {
 			for(String key: cl.getCommands().keySet()) {
-				System.out.println(key + ": " + cl.getCommands().get(key).info()); 
+				out.println(key + ": " + cl.getCommands().get(key).info()); 
 			}
 				
 		}
@@ -564,8 +1811,9 @@ public class CommandLine {
 	private class Back implements Command{
 		
 		/**
-		 * Remove history for given number of commands 
-		 * and execute command given number of lines ago. 
+		 * Erase history for given number of commands 
+		 * and execute command given number of lines ago, 
+		 * by moving the history's cursor back instead of popping each line. 
 		 * If string is not a number, command does not exist,
 		 * or is a back command do not execute and inform user
 		 * @param command number of lines as string
@@ -575,27 +1823,21 @@ public class CommandLine {
 			try {
 				int num = Integer.parseInt(command); 
 				
-				int index = 0; 
-				String input = cl.popLastCommand(); 
-				while (input != null && index < num) {
-					
-					input = cl.popLastCommand(); 
-					index += 1; 
-				}
+				String input = cl.history.back(num); 
 				if(input == null) {
-					System.out.println("UNABLE TO EXECUTE, INPUT DOES NOT EXIST");
+					error("UNABLE TO EXECUTE, INPUT DOES NOT EXIST");
 				}
 				else if (CommandLine.getCommand(input).equals("back")){
-					System.out.println("UNABLE TO EXECUTE, CANNOT PROCESS BACK COMMANDS");
+					error("UNABLE TO EXECUTE, CANNOT PROCESS BACK COMMANDS");
 				}
 				else {
-					System.out.println(getSelectedFolder().getLocationString() + "/" + input); 
+					out.println(getSelectedFolder().getLocationString() + "/" + input); 
 					cl.executeInput(input);
 				}
 				
 				
 			} catch (Exception e){
-				System.out.println("INVALID INPUt, PLEASE TYPE A NUMBER");
+				error("INVALID INPUt, PLEASE TYPE A NUMBER");
 			}
 		}
 		
@@ -617,7 +1859,8 @@ public class CommandLine {
 		
 		/**
 		 * Redoes a command that was erased, given the amount of 
-		 * erasures to go through. 
+		 * erasures to go through, 1 for the line back erased last. 
+		 * The lines erased before it are brought back into the history too. 
 		 * If input is not a number, command to execute does not 
 		 * exist, or is a next command do not execute and inform user. 
 		 * @param command number of erasures to go back to 
@@ -627,27 +1870,21 @@ public class CommandLine {
 			try {
 				int num = Integer.parseInt(command); 
 				
-				int index = 0; 
-				String input = cl.popLastCommand(); 
-				while (input != null && index < num) {
-					
-					input = cl.redoCommand(); 
-					index += 1; 
-				}
+				String input = cl.history.redo(num); 
 				if(input == null) {
-					System.out.println("UNABLE TO EXECUTE, INPUT DOES NOT EXIST");
+					error("UNABLE TO EXECUTE, INPUT DOES NOT EXIST");
 				}
 				else if (CommandLine.getCommand(input).equals("redo")){
-					System.out.println("UNABLE TO EXECUTE, CANNOT PROCESS redo COMMANDS");
+					error("UNABLE TO EXECUTE, CANNOT PROCESS redo COMMANDS");
 				}
 				else {
-					System.out.println(getSelectedFolder().getLocationString() + "/" + input); 
+					out.println(getSelectedFolder().getLocationString() + "/" + input); 
 					cl.executeInput(input);
 				}
 				
 				
 			} catch (Exception e){
-				System.out.println("INVALID INPUT, PLEASE TYPE A NUMBER");
+				error("INVALID INPUT, PLEASE TYPE A NUMBER");
 			}
 		}
 		
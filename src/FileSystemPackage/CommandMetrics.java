@@ -0,0 +1,221 @@
+package FileSystemPackage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times every command run by every command line in this JVM.
+ * Each command name has its count of errors and a LatencyHistogram of its
+ * times, which also counts its calls. Editor commands are named with a "*"
+ * before them, and inputs that are not commands are counted as errors of
+ * "unknown" or "*unknown".
+ *
+ * Recording only adds to striped counters, so sessions on many threads
+ * record without waiting on each other. The counts can be written to
+ * a file now and then as text, one line per command, for other tools to read.
+ * @author fiona
+ *
+ */
+public class CommandMetrics {
+	public static final String UNKNOWN = "unknown";
+
+	private static ConcurrentHashMap<String, Stats> commands = new ConcurrentHashMap<String, Stats>();
+	private static ScheduledExecutorService dumper;
+	private static ScheduledFuture<?> dumping;
+	private static Path dumpPath;
+	private static String dumpError;
+
+	/**
+	 * Get the stats of a command, creating them the first time
+	 * @param command name of command
+	 * @return stats of command
+	 */
+	private static Stats of(String command) {
+		Stats stats = commands.get(command);
+		if(stats == null) {
+			stats = commands.computeIfAbsent(command, name -> new Stats());
+		}
+		return stats;
+	}
+
+	/**
+	 * Count a run of a command
+	 * @param command name of command
+	 * @param nanos time it took
+	 * @param failed true if it ended with an error
+	 */
+	public static void record(String command, long nanos, boolean failed) {
+		Stats stats = of(command);
+		stats.latency.add(nanos);
+		if(failed) {
+			stats.errors.increment();
+		}
+	}
+
+	/**
+	 * Get the names of commands counted so far, sorted
+	 * @return command names
+	 */
+	public static ArrayList<String> getCommands() {
+		ArrayList<String> names = new ArrayList<String>(commands.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Get the times of a command
+	 * @param command name of command
+	 * @return histogram of times, null if the command has not run
+	 */
+	public static LatencyHistogram getLatency(String command) {
+		Stats stats = commands.get(command);
+		return stats == null ? null : stats.latency;
+	}
+
+	/**
+	 * Get amount of runs of a command that ended with an error
+	 * @param command name of command
+	 * @return error count
+	 */
+	public static long getErrors(String command) {
+		Stats stats = commands.get(command);
+		return stats == null ? 0 : stats.errors.sum();
+	}
+
+	/**
+	 * Forget all counts
+	 */
+	public static void reset() {
+		commands.clear();
+	}
+
+	/**
+	 * Write a table of every command's calls, errors and times,
+	 * in microseconds, for people to read
+	 * @return table, one line per command
+	 */
+	public static String table() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%-10s %9s %7s %9s %9s %9s %9s %9s%n", "command", "calls", "errors", "mean us", "p50 us", "p99 us", "p999 us", "max us"));
+		for(String command: getCommands()) {
+			Stats stats = commands.get(command);
+			LatencyHistogram latency = stats.latency;
+			long calls = latency.getCount();
+			builder.append(String.format("%-10s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", command, calls, stats.errors.sum(),
+					latency.getSum() / 1000.0 / Math.max(1, calls), latency.percentile(0.5) / 1000.0,
+					latency.percentile(0.99) / 1000.0, latency.percentile(0.999) / 1000.0, latency.getMax() / 1000.0));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Write every command's counts for other tools to read:
+	 * one line per command of space separated name=value pairs,
+	 * times in nanoseconds, each line starting with the time in milliseconds
+	 * @return counts, one line per command
+	 */
+	public static String dump() {
+		long now = System.currentTimeMillis();
+		StringBuilder builder = new StringBuilder();
+		for(String command: getCommands()) {
+			Stats stats = commands.get(command);
+			LatencyHistogram latency = stats.latency;
+			builder.append("time=").append(now)
+				.append(" command=").append(command.replace(' ', '_'))
+				.append(" calls=").append(latency.getCount())
+				.append(" errors=").append(stats.errors.sum())
+				.append(" sum_ns=").append(latency.getSum())
+				.append(" p50_ns=").append(latency.percentile(0.5))
+				.append(" p99_ns=").append(latency.percentile(0.99))
+				.append(" p999_ns=").append(latency.percentile(0.999))
+				.append(" max_ns=").append(latency.getMax())
+				.append('\n');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Add the counts to the end of a file
+	 * @param path file to add to, created if it does not exist
+	 * @throws IOException if the file can not be written
+	 */
+	public static void dumpTo(Path path) throws IOException {
+		Files.write(path, dump().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Add the counts to the end of a file every given amount of seconds,
+	 * replacing any earlier dumping. If the file can not be written,
+	 * dumping stops and getDumpError tells why
+	 * @param path file to add to
+	 * @param seconds seconds between dumps
+	 */
+	public static synchronized void dumpEvery(Path path, long seconds) {
+		stopDumping();
+		if(dumper == null) {
+			dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "metrics-dump");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		dumpPath = path;
+		dumpError = null;
+		dumping = dumper.scheduleAtFixedRate(() -> {
+			try {
+				dumpTo(path);
+			}catch (IOException e) {
+				synchronized(CommandMetrics.class) {
+					dumpError = e.getMessage();
+					stopDumping();
+				}
+			}
+		}, seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop dumping counts at intervals
+	 */
+	public static synchronized void stopDumping() {
+		if(dumping != null) {
+			dumping.cancel(false);
+			dumping = null;
+			dumpPath = null;
+		}
+	}
+
+	/**
+	 * Get the file counts are being dumped to
+	 * @return path, null if not dumping
+	 */
+	public static synchronized Path getDumpPath() {
+		return dumpPath;
+	}
+
+	/**
+	 * Get why dumping at intervals last stopped on its own
+	 * @return error message, null if it has not
+	 */
+	public static synchronized String getDumpError() {
+		return dumpError;
+	}
+
+	/**
+	 * Calls, errors and times of one command
+	 */
+	private static class Stats {
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAdder errors = new LongAdder();
+	}
+}
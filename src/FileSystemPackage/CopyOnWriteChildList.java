@@ -0,0 +1,208 @@
+package FileSystemPackage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Child list that is never changed in place.
+ * Every change builds a new immutable array of children and publishes it
+ * with a compare and set, retrying if another thread published first.
+ * Readers only read the published array, so they never lock, never wait
+ * and never see a change half done, and iterators see the children as they
+ * were when the iterator was made.
+ * Changes copy the whole list, so this suits folders that are listed
+ * and walked far more often than folders are added to them.
+ * @author fiona
+ *
+ */
+public class CopyOnWriteChildList implements ChildList {
+	public static final int INDEX_THRESHOLD = 8;
+	private static final Children EMPTY = new Children(new FolderTreeNode[0], new String[0]);
+	private static final AtomicReferenceFieldUpdater<CopyOnWriteChildList, Children> CURRENT =
+			AtomicReferenceFieldUpdater.newUpdater(CopyOnWriteChildList.class, Children.class, "current");
+
+	volatile Children current;
+
+	/**
+	 * Create an empty list
+	 */
+	public CopyOnWriteChildList() {
+		current = EMPTY;
+	}
+
+	@Override
+	public boolean add(FolderTreeNode child) {
+		String name = child.getValue().getName();
+		while(true) {
+			Children children = current;
+			if(children.find(name) >= 0) {
+				return false;
+			}
+			int length = children.nodes.length;
+			FolderTreeNode[] nodes = Arrays.copyOf(children.nodes, length + 1);
+			String[] names = Arrays.copyOf(children.names, length + 1);
+			nodes[length] = child;
+			names[length] = name;
+			if(CURRENT.compareAndSet(this, children, new Children(nodes, names))) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public boolean remove(FolderTreeNode child) {
+		while(true) {
+			Children children = current;
+			int index = children.indexOf(child);
+			if(index < 0) {
+				return false;
+			}
+			int length = children.nodes.length;
+			FolderTreeNode[] nodes = new FolderTreeNode[length - 1];
+			String[] names = new String[length - 1];
+			System.arraycopy(children.nodes, 0, nodes, 0, index);
+			System.arraycopy(children.nodes, index + 1, nodes, index, length - index - 1);
+			System.arraycopy(children.names, 0, names, 0, index);
+			System.arraycopy(children.names, index + 1, names, index, length - index - 1);
+			if(CURRENT.compareAndSet(this, children, new Children(nodes, names))) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public boolean rename(FolderTreeNode child, String newName) {
+		while(true) {
+			Children children = current;
+			int existing = children.find(newName);
+			if(existing >= 0) {
+				return children.nodes[existing] == child;
+			}
+			int index = children.indexOf(child);
+			if(index < 0) {
+				return true;
+			}
+			String[] names = children.names.clone();
+			names[index] = newName;
+			if(CURRENT.compareAndSet(this, children, new Children(children.nodes, names))) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public FolderTreeNode get(String name) {
+		Children children = current;
+		int index = children.find(name);
+		return index < 0 ? null : children.nodes[index];
+	}
+
+	@Override
+	public FolderTreeNode get(int index) {
+		FolderTreeNode[] nodes = current.nodes;
+		if (index < 0 || index >= nodes.length) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds!");
+		}
+		return nodes[index];
+	}
+
+	@Override
+	public int size() {
+		return current.nodes.length;
+	}
+
+	@Override
+	public FolderTreeNode[] toArray() {
+		return current.nodes.clone();
+	}
+
+	@Override
+	public Iterator<FolderTreeNode> iterator() {
+		FolderTreeNode[] nodes = current.nodes;
+		return new Iterator<FolderTreeNode>() {
+			int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < nodes.length;
+			}
+
+			@Override
+			public FolderTreeNode next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return nodes[next ++];
+			}
+		};
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return true;
+	}
+
+	/**
+	 * One published version of the list: children, their names,
+	 * and a name index once there are more than INDEX_THRESHOLD children.
+	 * Never changed after it is built
+	 */
+	private static final class Children {
+		final FolderTreeNode[] nodes;
+		final String[] names;
+		final HashMap<String, Integer> index;
+
+		/**
+		 * Create a version of the list
+		 * @param nodes children in order
+		 * @param names name of each child
+		 */
+		Children(FolderTreeNode[] nodes, String[] names) {
+			this.nodes = nodes;
+			this.names = names;
+			if(names.length > INDEX_THRESHOLD) {
+				index = new HashMap<String, Integer>(names.length * 2);
+				for(int i = 0; i < names.length; i++) {
+					index.put(names[i], i);
+				}
+			}else {
+				index = null;
+			}
+		}
+
+		/**
+		 * Find the index of the child with a name
+		 * @param name name to look for
+		 * @return index of child, -1 if there is none
+		 */
+		int find(String name) {
+			if(index != null) {
+				Integer found = index.get(name);
+				return found == null ? -1 : found;
+			}
+			for(int i = 0; i < names.length; i++) {
+				if(names[i].equals(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Find the index of a child node
+		 * @param child node to look for
+		 * @return index of child, -1 if it is not a child
+		 */
+		int indexOf(FolderTreeNode child) {
+			for(int i = 0; i < nodes.length; i++) {
+				if(nodes[i] == child) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+}
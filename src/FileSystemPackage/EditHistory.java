@@ -0,0 +1,244 @@
+package FileSystemPackage;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * Stack of file edits that stays within the budgets of HistoryBudget.
+ * The newest edits are kept in memory, older ones are moved to the
+ * spill file or dropped, and are read back when undo reaches them.
+ * Every history is guarded by its own lock. Changes in its memory are
+ * added to the budget after the lock is released, since going over the
+ * global budget evicts edits from other histories, taking their locks.
+ * @author fiona
+ *
+ */
+public class EditHistory implements StackInterface<TextEdit> {
+	private static final long[] NO_OFFSETS = new long[0];
+	ArrayStack<TextEdit> edits;
+	long bytes;
+	long[] spilled;
+	int spilledCount;
+	long spilledBytes;
+	int droppedCount;
+	volatile long lastUsed;
+
+	/**
+	 * Create an empty history
+	 */
+	public EditHistory() {
+		edits = new ArrayStack<TextEdit>();
+		bytes = 0;
+		spilled = NO_OFFSETS;
+		spilledCount = 0;
+		spilledBytes = 0;
+		droppedCount = 0;
+	}
+
+	/** Adds a new entry to the top of this stack.
+    @param newEntry  An object to be added to the stack. */
+	@Override
+	public void push(TextEdit newEntry) {
+		long change;
+		synchronized(this) {
+			edits.push(newEntry);
+			bytes += newEntry.bytes();
+			change = newEntry.bytes() - fitFileBudget();
+			used();
+		}
+		HistoryBudget.update(change);
+	}
+
+	/** Removes and returns this stack's top entry.
+    @return  The object at the top of the stack.
+    @throws  EmptyStackException if the stack is empty before
+    the operation. */
+	@Override
+	public TextEdit pop() {
+		TextEdit edit;
+		long change;
+		synchronized(this) {
+			change = pageIn();
+			edit = edits.pop();
+			bytes -= edit.bytes();
+			change -= edit.bytes();
+			used();
+		}
+		HistoryBudget.update(change);
+		return edit;
+	}
+
+	/** Retrieves this stack's top entry.
+    @return  The object at the top of the stack.
+    @throws  EmptyStackException if the stack is empty. */
+	@Override
+	public TextEdit peek() {
+		TextEdit edit;
+		long change;
+		synchronized(this) {
+			change = pageIn();
+			edit = edits.peek();
+			used();
+		}
+		HistoryBudget.update(change);
+		return edit;
+	}
+
+	/** Detects whether this stack is empty.
+    @return  True if the stack is empty. */
+	@Override
+	public synchronized boolean isEmpty() {
+		return edits.isEmpty() && spilledCount == 0;
+	}
+
+	/** Gets the number of entries in this stack, 
+	 * counting spilled entries.
+    @return  The number of entries. */
+	@Override
+	public synchronized int size() {
+		return edits.size() + spilledCount;
+	}
+
+	/** Removes all entries from this stack. */
+	@Override
+	public synchronized void clear() {
+		if(bytes == 0 && spilledCount == 0 && edits.isEmpty()) {
+			droppedCount = 0;
+			return;
+		}
+		HistoryBudget.release(this);
+		edits.clear();
+		bytes = 0;
+		spilledCount = 0;
+		spilledBytes = 0;
+		droppedCount = 0;
+	}
+
+	/**
+	 * Mark the history as just used and tell the budget whether it holds edits
+	 */
+	private void used() {
+		lastUsed = System.nanoTime();
+		HistoryBudget.track(this);
+	}
+
+	/**
+	 * Push the oldest edits out of memory while the history is over the per file budget
+	 * @return bytes freed
+	 */
+	private long fitFileBudget() {
+		long budget = HistoryBudget.getFileBudget();
+		long freed = 0;
+		long last = 1;
+		while(bytes > budget && last > 0) {
+			last = evictOldest();
+			freed += last;
+		}
+		return freed;
+	}
+
+	/**
+	 * Read the newest spilled edit back into memory if no edits are in memory
+	 * @return bytes read back into memory
+	 * @throws EmptyStackException if there are no edits left
+	 */
+	private long pageIn() {
+		if(isEmpty()) {
+			throw new EmptyStackException();
+		}
+		if(!edits.isEmpty()) {
+			return 0;
+		}
+		spilledCount --;
+		TextEdit edit = HistoryBudget.load(spilled[spilledCount]);
+		if(edit == null) {
+			//history older than an unreadable edit can not be applied
+			HistoryBudget.unspill(spilledCount + 1);
+			droppedCount += spilledCount + 1;
+			spilledCount = 0;
+			spilledBytes = 0;
+			throw new EmptyStackException();
+		}
+		HistoryBudget.unspill(1);
+		spilledBytes -= edit.bytes();
+		edits.push(edit);
+		bytes += edit.bytes();
+		return edit.bytes();
+	}
+
+	/**
+	 * Move the oldest edit in memory out of memory,
+	 * spilling it to disk or dropping it depending on the policy. 
+	 * The newest edit always stays in memory so it can be undone.
+	 * Dropping an edit also drops every spilled edit older than it, 
+	 * since they can no longer be reached by undo. 
+	 * Called while holding the lock of this history
+	 * @return bytes freed, 0 if no edit could be moved
+	 */
+	long evictOldest() {
+		if(edits.size() <= 1) {
+			return 0;
+		}
+		TextEdit edit = edits.removeBottom();
+		bytes -= edit.bytes();
+
+		long offset = -1;
+		if(HistoryBudget.getPolicy() == HistoryBudget.Policy.SPILL) {
+			offset = HistoryBudget.spill(edit);
+		}
+		if(offset < 0) {
+			HistoryBudget.unspill(spilledCount);
+			droppedCount += spilledCount + 1;
+			spilledCount = 0;
+			spilledBytes = 0;
+		}else {
+			if(spilledCount == spilled.length) {
+				spilled = Arrays.copyOf(spilled, Math.max(8, spilled.length * 2));
+			}
+			spilled[spilledCount] = offset;
+			spilledCount ++;
+			spilledBytes += edit.bytes();
+		}
+		return edit.bytes();
+	}
+
+	/**
+	 * Get bytes of edits held in memory
+	 * @return bytes in memory
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Get amount of edits held in memory
+	 * @return edits in memory
+	 */
+	public synchronized int memoryCount() {
+		return edits.size();
+	}
+
+	/**
+	 * Get amount of edits in the spill file
+	 * @return spilled edits
+	 */
+	public synchronized int spilledCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * Get bytes of edits in the spill file
+	 * @return spilled bytes
+	 */
+	public synchronized long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/**
+	 * Get amount of edits that were dropped
+	 * @return dropped edits
+	 */
+	public synchronized int droppedCount() {
+		return droppedCount;
+	}
+}
@@ -1,15 +1,35 @@
 package FileSystemPackage;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EmptyStackException;
+
 /**
- * Simulation of a text file 
+ * Simulation of a text file. 
+ * A file loaded from a snapshot only holds where its text is in the 
+ * snapshot, the text is read the first time it is used. 
+ * Methods reading or changing text are synchronized, 
+ * so threads sharing a tree can display and edit the same file. 
+ * The file keeps the UTF-8 size of its text, and every change adds 
+ * the difference to the totals of its folder and the folders above it. 
+ * If the tree holding the file has a text index, every change 
+ * tells the index which range of the text was replaced. 
  * @author fiona
  *
  */
 public class File {
+	public static final String EXTENSION = ".txt";
 	String fileName; 
-	String text; 
-	Stack<String> previousVersions; 
-	Stack<String> redoVersions; 
+	Rope text; 
+	String textString; 
+	ByteBuffer store; 
+	int storeOffset; 
+	int storeLength; 
+	long size; 
+	int textId; 
+	EditHistory previousVersions; 
+	EditHistory redoVersions; 
+	Folder folder; 
 	
 	/**
 	 * Create file given name and starting text 
@@ -17,11 +37,14 @@ public class File {
 	 * @param text starting text of file 
 	 */
 	public File(String filePrefix, String text) {
-		fileName = filePrefix + ".txt"; 
-		this.text = text; 
-		previousVersions = new Stack<String>(); 
+		fileName = filePrefix + EXTENSION; 
+		this.text = Rope.of(text); 
+		textString = text; 
+		size = this.text.utf8Length(); 
+		textId = -1; 
+		previousVersions = new EditHistory(); 
 		
-		redoVersions = new Stack<String>();
+		redoVersions = new EditHistory();
 	}
 	
 	/**
@@ -32,6 +55,76 @@ public class File {
 		this(filePrefix, ""); 
 	}
 	
+	/**
+	 * Create file given its full name and starting text
+	 * @param fileName file name, .txt is not added 
+	 * @param text starting text of file 
+	 * @return new file
+	 */
+	static File withName(String fileName, String text) {
+		File file = new File("", text); 
+		file.fileName = fileName; 
+		return file; 
+	}
+	
+	/**
+	 * Create file given its full name and where its UTF-8 text is stored, 
+	 * the text is not read until it is used
+	 * @param fileName file name, .txt is not added 
+	 * @param store buffer holding the text 
+	 * @param offset index of the text in store 
+	 * @param length length of the text in bytes 
+	 * @return new file
+	 */
+	static File stored(String fileName, ByteBuffer store, int offset, int length) {
+		File file = withName(fileName, ""); 
+		if(length > 0) {
+			file.text = null; 
+			file.textString = null; 
+			file.store = store; 
+			file.storeOffset = offset; 
+			file.storeLength = length; 
+			file.size = length; 
+		}
+		return file; 
+	}
+	
+	/**
+	 * Return true if the text has been read, 
+	 * false if it is still only in the store
+	 * @return if text is in memory
+	 */
+	synchronized boolean isLoaded() {
+		return store == null; 
+	}
+	
+	/**
+	 * Get the text of the file as UTF-8, 
+	 * copied from the store without reading the text if it has not been used 
+	 * @return UTF-8 bytes of text
+	 */
+	synchronized byte[] getTextBytes() {
+		if(store != null) {
+			byte[] bytes = new byte[storeLength]; 
+			store.get(storeOffset, bytes); 
+			return bytes; 
+		}
+		return getText().getBytes(StandardCharsets.UTF_8); 
+	}
+	
+	/**
+	 * Get the text of the file, reading it from the store the first time
+	 * @return text of file 
+	 */
+	private Rope rope() {
+		if(store != null) {
+			textString = new String(getTextBytes(), StandardCharsets.UTF_8); 
+			text = Rope.of(textString); 
+			store = null; 
+		}
+		return text; 
+	}
+	
 	/**
 	 * return name of file
 	 * @return file name 
@@ -41,61 +134,280 @@ public class File {
 	}
 	
 	/**
-	 * set file name
+	 * set file name, 
+	 * will not rename if the folder already has 
+	 * a file with the new name
 	 * @param fileName new name of file
+	 * @return true if file was renamed
 	 */
-	public void setFileName(String fileName) {
+	public boolean setFileName(String fileName) {
+		if(folder != null && !folder.renameFile(this, fileName)) {
+			return false; 
+		}
 		this.fileName = fileName;
+		return true; 
 	}
 	
 	/**
-	 * Get text in file
+	 * Get the folder holding this file
+	 * @return folder of file, null if not in a folder
+	 */
+	Folder getFolder() {
+		return folder;
+	}
+	
+	/**
+	 * Set the folder holding this file
+	 * @param folder folder of file
+	 */
+	void setFolder(Folder folder) {
+		this.folder = folder;
+	}
+	
+	/**
+	 * Get text in file, 
+	 * the string is only built when the text has changed since it was last asked for
 	 * @return text of file
 	 */
-	public String getText() {
-		return text;
+	public synchronized String getText() {
+		if(textString == null) {
+			textString = rope().toString(); 
+		}
+		return textString;
+	}
+	
+	/**
+	 * Get text in file without copying it into a string
+	 * @return text of file 
+	 */
+	public synchronized CharSequence getTextSequence() {
+		return rope(); 
 	}
 	
 	/**
-	 * Set text of file 
+	 * Get the last lines of the text, reading only the end of it
+	 * instead of building the whole text
+	 * @param lines amount of lines
+	 * @return last lines, with the line break after the last one if the text has it
+	 */
+	public synchronized String tail(int lines) {
+		Rope current = rope(); 
+		int end = current.length(); 
+		if(lines <= 0 || end == 0) {
+			return ""; 
+		}
+		int start = end; 
+		if(current.charAt(start - 1) == '\n') {
+			start --; 
+		}
+		int found = 0; 
+		while(start > 0) {
+			if(current.charAt(start - 1) == '\n' && ++found == lines) {
+				break; 
+			}
+			start --; 
+		}
+		return current.subSequence(start, end).toString(); 
+	}
+	
+	/**
+	 * Get amount of characters in file
+	 * @return length of text
+	 */
+	public synchronized int length() {
+		return rope().length(); 
+	}
+	
+	/**
+	 * Get amount of bytes the text takes as UTF-8, 
+	 * without reading text that is still only in the store
+	 * @return size of text in bytes
+	 */
+	public synchronized long size() {
+		return size; 
+	}
+	
+	/**
+	 * Update the size after the text changed and add the difference 
+	 * to the totals of the folders holding this file
+	 */
+	private void resized() {
+		long now = store != null ? storeLength : text.utf8Length(); 
+		long change = now - size; 
+		size = now; 
+		if(change != 0 && folder != null && folder.getNode() != null) {
+			folder.getNode().addTotals(0, 0, change);
+		}
+	}
+	
+	/**
+	 * Get the text index of the tree holding this file
+	 * @return index, null if the file is not in a tree or the tree has none
+	 */
+	private TextIndex textIndex() {
+		if(folder == null || folder.getNode() == null || folder.getNode().getTree() == null) {
+			return null; 
+		}
+		return folder.getNode().getTree().getTextIndex(); 
+	}
+	
+	/**
+	 * Tell the text index a range of the text was replaced
+	 * @param before text before the change
+	 * @param start index the replaced range begins at
+	 * @param oldEnd index after the replaced range in before
+	 * @param newEnd index after the new range in the current text
+	 */
+	private void reindex(Rope before, int start, int oldEnd, int newEnd) {
+		TextIndex index = textIndex(); 
+		if(index != null) {
+			index.update(this, before, text, start, oldEnd, newEnd); 
+		}
+	}
+	
+	/**
+	 * Change the text of the file and record the edit that reverses it,
+	 * erases versions that could be redone
+	 * @param newText new text of file
+	 * @param edit edit turning newText back into current text
+	 */
+	private void changeText(Rope newText, TextEdit edit) {
+		Rope before = text; 
+		int oldEnd = edit.start + edit.removed.length(); 
+		int newEnd = edit.start + edit.insertedLength; 
+		previousVersions.push(edit); 
+		redoVersions.clear();
+		text = newText; 
+		textString = null; 
+		resized(); 
+		reindex(before, edit.start, oldEnd, newEnd); 
+	}
+	
+	/**
+	 * Apply an edit from the undo or redo history 
+	 * and push the edit reversing it onto the other history
+	 * @param edit edit to apply
+	 * @param reverse history the reversing edit goes to
+	 */
+	private void applyEdit(TextEdit edit, EditHistory reverse) {
+		Rope before = this.text; 
+		reverse.push(edit.inverse(before));
+		this.text = edit.apply(before); 
+		textString = null; 
+		resized(); 
+		reindex(before, edit.start, edit.start + edit.insertedLength, edit.start + edit.removed.length()); 
+	}
+	
+	/**
+	 * Set text of file, 
+	 * erases versions that could be redone
 	 * @param text text to set
 	 */
-	public void setText(String text) {
-		previousVersions.push(this.text); 
-		this.text = text;
+	public synchronized void setText(String text) {
+		changeText(Rope.of(text), TextEdit.between(getText(), text));
+		textString = text; 
 	}
 	
 	/**
-	 * Add to text after current text 
+	 * Add to text after current text, 
+	 * erases versions that could be redone
 	 * @param text text segment to add 
 	 */
-	public void addText(String text) {
-		previousVersions.push(this.text); 
-		this.text += text;
+	public synchronized void addText(String text) {
+		Rope current = rope(); 
+		changeText(current.append(text), TextEdit.append(current.length(), text.length()));
+	}
+	
+	/**
+	 * Add lines after current text as a single version, 
+	 * each line is followed by a new line 
+	 * @param lines lines to add 
+	 */
+	public void addLines(Iterable<String> lines) {
+		StringBuilder builder = new StringBuilder(); 
+		for(String line: lines) {
+			builder.append(line).append("\n"); 
+		}
+		addText(builder.toString());
+	}
+	
+	/**
+	 * Add text at an index of the current text, 
+	 * erases versions that could be redone
+	 * @param index location to add text at
+	 * @param text text to add 
+	 */
+	public synchronized void insertText(int index, String text) {
+		changeText(rope().insert(index, text), TextEdit.insert(index, text.length()));
+	}
+	
+	/**
+	 * Remove text between two indexes, 
+	 * erases versions that could be redone
+	 * @param start first index to remove
+	 * @param end index after the last one to remove 
+	 */
+	public synchronized void deleteText(int start, int end) {
+		Rope current = rope(); 
+		String deleted = current.subSequence(start, end).toString(); 
+		changeText(current.delete(start, end), TextEdit.delete(start, deleted));
 	}
 	
 	/**
 	 * Restore a previous version of file, 
-	 * if no previous version exists, do nothing 
+	 * if no previous version exists or it could not 
+	 * be read back from the spill file, do nothing 
+	 * @return true if a version was restored
 	 */
-	public void undo() {
+	public synchronized boolean undo() {
 		if(!previousVersions.isEmpty()) {
-			redoVersions.push(this.text);
-			this.text = previousVersions.pop(); 
+			TextEdit edit; 
+			try {
+				edit = previousVersions.pop(); 
+			}catch (EmptyStackException e) {
+				return false; 
+			}
+			applyEdit(edit, redoVersions); 
+			return true; 
 		}
-	
+		return false; 
 	}
 	
 	/**
 	 * Restore file to version before undo was called, 
-	 * if undo has not been called, do nothing  
+	 * if undo has not been called or the version could not 
+	 * be read back from the spill file, do nothing  
+	 * @return true if a version was restored
 	 */
-	public void redo() {
+	public synchronized boolean redo() {
 		if(!redoVersions.isEmpty()) {
-			setText(redoVersions.pop());
+			TextEdit edit; 
+			try {
+				edit = redoVersions.pop(); 
+			}catch (EmptyStackException e) {
+				return false; 
+			}
+			applyEdit(edit, previousVersions); 
+			return true; 
 		}
-		 
+		return false; 
+	}
+	/**
+	 * Get the versions that can be undone
+	 * @return undo history 
+	 */
+	public EditHistory getUndoHistory() {
+		return previousVersions; 
 	}
+	
+	/**
+	 * Get the versions that can be redone
+	 * @return redo history
+	 */
+	public EditHistory getRedoHistory() {
+		return redoVersions; 
+	}
+	
 	/**
 	 * Return file name 
 	 */
@@ -106,10 +418,17 @@ public class File {
 	/**
 	 * Clear text and erase history 
 	 */
-	public void clear() {
-		text = ""; 
+	public synchronized void clear() {
+		Rope before = textIndex() != null ? rope() : null; 
+		text = Rope.EMPTY; 
+		textString = ""; 
+		store = null; 
 		previousVersions.clear();
 		redoVersions.clear();
+		resized(); 
+		if(before != null) {
+			reindex(before, 0, before.length(), 0); 
+		}
 	}
 	/**
 	 * Test file functions 
@@ -10,6 +10,8 @@ import java.util.*;
 public class Folder {
 	String name; 
 	ArrayList<File> files; 
+	HashMap<String, File> fileIndex; 
+	FolderTreeNode node; 
 	
 	/**
 	 * Construct folder given name
@@ -18,6 +20,7 @@ public class Folder {
 	public Folder(String name) {
 		this.name = name; 
 		files = new ArrayList<File>(); 
+		fileIndex = new HashMap<String, File>(); 
 	}
 	/**
 	 * Get name of folder
@@ -27,11 +30,45 @@ public class Folder {
 		return name;
 	}
 	/**
-	 * Change the name of the folder
+	 * Change the name of the folder, 
+	 * will not rename if the parent folder already 
+	 * has a child folder with the new name
 	 * @param name new name of folder 
+	 * @return true if folder was renamed
 	 */
-	public void setName(String name) {
+	public boolean setName(String name) {
+		if(node != null && node.getParent() != null && !node.getParent().renameChild(node, name)) {
+			return false; 
+		}
+		FolderTree tree = null; 
+		if(node != null) {
+			tree = node.getTree(); 
+		}
+		if(tree != null) {
+			tree.unindexSubtree(node); 
+		}
 		this.name = name;
+		FolderTreeNode.treeChanged(tree); 
+		if(tree != null) {
+			tree.indexSubtree(node); 
+		}
+		return true; 
+	}
+	
+	/**
+	 * Get the tree node holding this folder
+	 * @return node of folder, null if not in a tree
+	 */
+	FolderTreeNode getNode() {
+		return node;
+	}
+	
+	/**
+	 * Set the tree node holding this folder 
+	 * @param node node of folder
+	 */
+	void setNode(FolderTreeNode node) {
+		this.node = node;
 	}
 	
 	/**
@@ -49,12 +86,68 @@ public class Folder {
 	 * @return true if fileName is a file within the folder 
 	 */
 	public boolean hasFile(String fileName) {
-		for(File file: files) {
-			if(file.getFileName().equals(fileName) || file.getFileName().equals(fileName + ".txt")) {
-				return true; 
+		return getFile(fileName) != null; 
+	}
+	
+	/**
+	 * Return the key a file name is stored under in the file index, 
+	 * the name without a .txt at the end 
+	 * @param fileName name of file (can either end with .txt or not)
+	 * @return file name without .txt
+	 */
+	static String indexKey(String fileName) {
+		if(fileName.endsWith(File.EXTENSION)) {
+			return fileName.substring(0, fileName.length() - File.EXTENSION.length()); 
+		}else {
+			return fileName; 
+		}
+	}
+	
+	/**
+	 * Add a file to the end of the folder and to the file index
+	 * @param file file to add
+	 */
+	private void indexFile(File file) {
+		files.add(file); 
+		fileIndex.put(indexKey(file.getFileName()), file); 
+		file.setFolder(this);
+		if(node != null) {
+			node.addTotals(1, 0, file.size());
+			if(node.getTree() != null && node.getTree().getTextIndex() != null) {
+				node.getTree().getTextIndex().add(file); 
 			}
 		}
-		return false; 
+	}
+	
+	/**
+	 * Get amount of bytes the text of all files in the folder takes as UTF-8
+	 * @return size of files in bytes
+	 */
+	long fileBytes() {
+		long bytes = 0; 
+		for(File file: files) {
+			bytes += file.size(); 
+		}
+		return bytes; 
+	}
+	
+	/**
+	 * Move a file to a new name in the file index. 
+	 * Will not rename if another file already has the new name
+	 * @param file file being renamed
+	 * @param newName name the file will have
+	 * @return true if the file can take the new name
+	 */
+	boolean renameFile(File file, String newName) {
+		String newKey = indexKey(newName); 
+		File existing = fileIndex.get(newKey); 
+		if(existing != null) {
+			return existing == file; 
+		}else {
+			fileIndex.remove(indexKey(file.getFileName()), file); 
+			fileIndex.put(newKey, file); 
+			return true; 
+		}
 	}
 	
 	/**
@@ -65,10 +158,10 @@ public class Folder {
 	 * @return if file was successfully added. 
 	 */
 	public boolean addFile(String filePrefix) {
-		if(hasFile(filePrefix + ".txt")) {
+		if(fileIndex.containsKey(filePrefix)) {
 			return false; 
 		}else {
-			files.add(new File(filePrefix)); 
+			indexFile(new File(filePrefix));
 			return true; 
 		}
 	}
@@ -81,25 +174,46 @@ public class Folder {
 	 * @return if file was successfully added. 
 	 */
 	public boolean addFile(String filePrefix, String text) {
-		if(hasFile(filePrefix + ".txt")) {
+		if(fileIndex.containsKey(filePrefix)) {
 			return false; 
 		}else {
-			files.add(new File(filePrefix, text)); 
+			indexFile(new File(filePrefix, text));
+			return true; 
+		}
+	}
+	
+	/**
+	 * Add an existing file to the folder. 
+	 * Will not add file if there is already a file
+	 * by that name in folder and will return false. 
+	 * @param file file to add
+	 * @return if file was successfully added. 
+	 */
+	public boolean addFile(File file) {
+		if(fileIndex.containsKey(indexKey(file.getFileName()))) {
+			return false; 
+		}else {
+			indexFile(file);
 			return true; 
 		}
 	}
 	
 	/**
 	 * Get a file in folder given a name, 
-	 * will return null if file does not exist
+	 * will return null if file does not exist. 
+	 * A file named exactly fileName is found before one named fileName.txt, 
+	 * so with a.txt and a.txt.txt in the folder, a.txt finds a.txt 
 	 * @param fileName name of file in folder (can either have .txt or not)
 	 * @return file with fileName if found, otherwise null
 	 */
 	public File getFile(String fileName) {
-		for(File file: files) {
-			if(file.getFileName().equals(fileName) || file.getFileName().equals(fileName + ".txt")) {
-				return file; 
-			}
+		File file = fileIndex.get(indexKey(fileName)); 
+		if(file != null && file.getFileName().equals(fileName)) {
+			return file; 
+		}
+		file = fileIndex.get(fileName); 
+		if(file != null && file.getFileName().equals(fileName + File.EXTENSION)) {
+			return file; 
 		}
 		return null; 
 	}
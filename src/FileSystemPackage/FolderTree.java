@@ -1,16 +1,43 @@
 package FileSystemPackage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
 /**
- * A tree made up of folder tree nodes 
+ * A tree made up of folder tree nodes. 
+ * Every node in the tree is indexed by its location string. 
+ * Several threads can share a tree: the children and files of a node 
+ * are guarded by its lock from getLock, and the index and path cache 
+ * can be used without locking. Copy-on-write child lists 
+ * can also be read without locking. 
+ * A text index of the words in the tree's files is built 
+ * the first time it is asked for and kept up to date from then on. 
+ * Each tree counts its own generation, so renaming, moving or removing 
+ * a folder only empties the location strings and paths kept in that tree 
  * @author fiona
  *
  */
 public class FolderTree {
+	public static final String SEPARATOR = "/"; 
+	public static final String PARENT = ".."; 
+	public static final String CURRENT = "."; 
+	public static final int INDEX_ENTRY_BYTES = 32; 
+	public static final int INDEX_SLOT_BYTES = 4; 
+	public static final int STRING_BYTES = 24; 
+	public static final int ARRAY_HEADER_BYTES = 16; 
 	FolderTreeNode root; 
+	PathCache paths; 
+	ConcurrentHashMap<String, FolderTreeNode> locations; 
+	NodeLocks locks; 
+	volatile TextIndex textIndex; 
+	volatile long generation; 
+	LongAdder keyBytes; 
 	/**
 	 * Create an empty tree
 	 */
 	public FolderTree() {
-		root = null; 
+		this(null); 
 	}
 	
 	/**
@@ -18,7 +45,12 @@ public class FolderTree {
 	 * @param root node of root
 	 */
 	public FolderTree(FolderTreeNode root) {
-		this.root = root; 
+		generation = FolderTreeNode.nextGeneration(); 
+		paths = new PathCache(this); 
+		locations = new ConcurrentHashMap<String, FolderTreeNode>(); 
+		keyBytes = new LongAdder(); 
+		locks = new NodeLocks(); 
+		setRoot(root); 
 	}
 	
 	/**
@@ -35,6 +67,261 @@ public class FolderTree {
 	 */
 	public void setRoot(FolderTreeNode root) {
 		this.root = root;
+		paths.clear(); 
+		locations.clear(); 
+		keyBytes.reset(); 
+		if(root != null) {
+			indexSubtree(root); 
+		}
+	}
+	
+	/**
+	 * Get the node at a location string, such as root/a/b
+	 * @param location location string of node 
+	 * @return node at location, null if there is none
+	 */
+	public FolderTreeNode getFolder(String location) {
+		return locations.get(location); 
+	}
+	
+	/**
+	 * Get the lock guarding the children and files of a node. 
+	 * Hold the read lock to look at them and the write lock to change them
+	 * @param node node to lock
+	 * @return read/write lock of node
+	 */
+	public ReadWriteLock getLock(FolderTreeNode node) {
+		return locks.of(node); 
+	}
+	
+	/**
+	 * Take the read lock of every node, so nothing in the tree 
+	 * changes until readUnlockAll is called
+	 */
+	public void readLockAll() {
+		locks.readLockAll(); 
+	}
+	
+	/**
+	 * Release the locks taken by readLockAll
+	 */
+	public void readUnlockAll() {
+		locks.readUnlockAll(); 
+	}
+	
+	/**
+	 * Return the node holding a folder if it is in this tree
+	 * @param folder folder to look for
+	 * @return node of folder, null if folder is not in tree
+	 */
+	public FolderTreeNode getElement(Folder folder) {
+		FolderTreeNode node = folder.getNode(); 
+		if(node != null && node.getTree() == this) {
+			return node; 
+		}else {
+			return null; 
+		}
+	}
+	
+	/**
+	 * Get the text index of the tree's files if it has been built
+	 * @return index, null if not built
+	 */
+	TextIndex getTextIndex() {
+		return textIndex; 
+	}
+	
+	/**
+	 * Get the text index of the tree's files, building it the first time. 
+	 * The index is set before the files are added, so files added or 
+	 * changed while it is being built are indexed too
+	 * @return index of tree
+	 */
+	public synchronized TextIndex textIndex() {
+		if(textIndex == null) {
+			textIndex = new TextIndex(); 
+			if(root != null) {
+				textIndex.addSubtree(root); 
+			}
+		}
+		return textIndex; 
+	}
+	
+	/**
+	 * Return amount of nodes in the location index
+	 * @return indexed nodes
+	 */
+	public int size() {
+		return locations.size(); 
+	}
+	
+	/**
+	 * Estimate of the memory the location index uses on a 64 bit JVM 
+	 * with compressed references: a map entry per node, the map's table, 
+	 * whose length is the power of two the map grows to, and the location 
+	 * strings used as keys, counted from their lengths as they are added. 
+	 * A key is often also a node's cached location, but is counted anyway, 
+	 * since the node lets go of it when the location changes 
+	 * @return estimated bytes used by index
+	 */
+	public long indexBytes() {
+		long entries = locations.size(); 
+		long slots = entries == 0 ? 0 : Long.highestOneBit(Math.max(1, entries * 4 / 3 + 1) * 2 - 1); 
+		return entries * INDEX_ENTRY_BYTES + slots * INDEX_SLOT_BYTES + keyBytes.sum(); 
+	}
+	
+	/**
+	 * Estimate the bytes of a string, its object and its array, 
+	 * with one byte per character if every character fits in one 
+	 * @param text string to measure
+	 * @return estimated bytes of string
+	 */
+	static long stringBytes(String text) {
+		int bytesPerChar = 1; 
+		for(int i = 0; i < text.length(); i++) {
+			if(text.charAt(i) > 0xFF) {
+				bytesPerChar = 2; 
+				break; 
+			}
+		}
+		long array = ARRAY_HEADER_BYTES + (long) text.length() * bytesPerChar; 
+		return STRING_BYTES + (array + 7) / 8 * 8; 
+	}
+	
+	/**
+	 * Add a node and all nodes below it to the location index
+	 * @param node top of subtree to index
+	 */
+	void indexSubtree(FolderTreeNode node) {
+		TreeTraversal.preOrder(node, FolderTreeNode::getIterable, next -> {
+			next.setTree(this); 
+			String location = next.getLocationString(); 
+			if(locations.put(location, next) == null) {
+				keyBytes.add(stringBytes(location)); 
+			}
+			return false; 
+		}); 
+	}
+	
+	/**
+	 * Remove a node and all nodes below it from the location index
+	 * @param node top of subtree to remove 
+	 */
+	void unindexSubtree(FolderTreeNode node) {
+		TreeTraversal.preOrder(node, FolderTreeNode::getIterable, next -> {
+			//location is worked out while the node is still in this tree
+			String location = next.getLocationString(); 
+			if(locations.remove(location, next)) {
+				keyBytes.add(-stringBytes(location)); 
+			}
+			next.setTree(null); 
+			return false; 
+		}); 
+		//locations the subtree kept the last time it was in no tree are out of date
+		FolderTreeNode.treeChanged(null); 
+	}
+	
+	/**
+	 * Get the number of times folders in this tree have been renamed, moved or removed, 
+	 * counted from a counter shared by all trees. 
+	 * Location strings and paths kept at a different generation are out of date
+	 * @return current generation of the tree
+	 */
+	long getGeneration() {
+		return generation; 
+	}
+	
+	/**
+	 * Mark the location strings and paths kept in this tree as out of date, 
+	 * leaving those of other trees 
+	 */
+	void changed() {
+		generation = FolderTreeNode.nextGeneration(); 
+	}
+	
+	/**
+	 * Find the folder a path leads to. 
+	 * Folders in the path are separated by "/", ".." is the parent folder 
+	 * and "." the current one. A path starting with "/" starts at the root, 
+	 * otherwise it starts at the given node. 
+	 * Paths with more than one folder are remembered in a cache 
+	 * @param from node relative paths start at 
+	 * @param path path to follow
+	 * @return node path leads to, null if a folder in the path does not exist
+	 */
+	public FolderTreeNode findFolder(FolderTreeNode from, String path) {
+		if(!path.contains(SEPARATOR)) {
+			return step(from, path); 
+		}
+		
+		//read before the key and the path are worked out, so a change during them is noticed
+		long generation = getGeneration(); 
+		String key; 
+		if(path.startsWith(SEPARATOR)) {
+			FolderTreeNode node = locations.get(root.getLocationString() + path); 
+			if(node != null) {
+				return node; 
+			}
+			key = path; 
+		}else {
+			key = from.getLocationString() + SEPARATOR + path; 
+		}
+		FolderTreeNode node = paths.get(key); 
+		if(node == null) {
+			node = resolve(from, path); 
+			if(node != null) {
+				paths.put(key, node, generation); 
+			}
+		}
+		return node; 
+	}
+	
+	/**
+	 * Follow a path one folder at a time
+	 * @param from node relative paths start at 
+	 * @param path path to follow
+	 * @return node path leads to, null if a folder in the path does not exist
+	 */
+	private FolderTreeNode resolve(FolderTreeNode from, String path) {
+		FolderTreeNode node = from; 
+		int start = 0; 
+		if(path.startsWith(SEPARATOR)) {
+			node = root; 
+			start = SEPARATOR.length(); 
+		}
+		while(node != null && start <= path.length()) {
+			int end = path.indexOf(SEPARATOR, start); 
+			if(end < 0) {
+				end = path.length(); 
+			}
+			node = step(node, path.substring(start, end)); 
+			start = end + SEPARATOR.length(); 
+		}
+		return node; 
+	}
+	
+	/**
+	 * Move from a node by one folder name of a path 
+	 * @param node node to move from
+	 * @param name child folder name, ".." for parent or "." or empty to stay 
+	 * @return node moved to, null if it does not exist
+	 */
+	private FolderTreeNode step(FolderTreeNode node, String name) {
+		if(name.isEmpty() || name.equals(CURRENT)) {
+			return node; 
+		}else if(name.equals(PARENT)) {
+			return node.getParent(); 
+		}else if(node.hasConcurrentChildren()) {
+			return node.getFolder(name); 
+		}else {
+			Lock lock = locks.of(node).readLock(); 
+			lock.lock(); 
+			try {
+				return node.getFolder(name); 
+			}finally {
+				lock.unlock(); 
+			}
+		}
 	}
 	
 	/**
@@ -49,7 +336,7 @@ public class FolderTree {
 	 * remove all elements from tree 
 	 */
 	public void clear() {
-		root = null;
+		setRoot(null); 
 	}
 
 }
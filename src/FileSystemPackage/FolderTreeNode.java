@@ -1,21 +1,42 @@
 package FileSystemPackage;
 
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Node of a file hierarchy, 
- * does not allow files with duplicate names 
+ * does not allow files with duplicate names. 
+ * Children are kept in a child list made by ChildListFactory. 
+ * Each node keeps totals of the folders, files and bytes of text in it 
+ * and every folder below it. Adding or removing a child, adding a file or 
+ * changing a file's text adds the difference to the node and each ancestor, 
+ * so the size of any subtree is read without walking it 
  * @author fiona
  *
  */
 public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	
 	public static final String INDENTSPACE = "  ";
+	private static final Object LOCATION_LOCK = new Object(); 
+	private static final AtomicLongFieldUpdater<FolderTreeNode> TOTAL_FOLDERS = 
+			AtomicLongFieldUpdater.newUpdater(FolderTreeNode.class, "totalFolders"); 
+	private static final AtomicLongFieldUpdater<FolderTreeNode> TOTAL_FILES = 
+			AtomicLongFieldUpdater.newUpdater(FolderTreeNode.class, "totalFiles"); 
+	private static final AtomicLongFieldUpdater<FolderTreeNode> TOTAL_BYTES = 
+			AtomicLongFieldUpdater.newUpdater(FolderTreeNode.class, "totalBytes"); 
+	private static final AtomicLong GENERATIONS = new AtomicLong(); 
+	static volatile long detachedGeneration = GENERATIONS.incrementAndGet(); 
 	Folder value; 
 	FolderTreeNode parent; 
-	ArrayList<FolderTreeNode> children; 
+	ChildList children; 
+	String location; 
+	volatile long locationCachedAt; 
+	FolderTree tree; 
+	volatile long totalFolders; 
+	volatile long totalFiles; 
+	volatile long totalBytes; 
 	
 	/**
 	 * Create a new folder node given a folder and parent node 
@@ -25,7 +46,13 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	public FolderTreeNode(Folder folder, FolderTreeNode parent) {
 		value = folder; 
 		this.parent = parent; 
-		children = new ArrayList<FolderTreeNode>(); 
+		children = ChildListFactory.newList(); 
+		folder.setNode(this);
+		location = null; 
+		locationCachedAt = -1; 
+		totalFolders = 1; 
+		totalFiles = folder.numberOfFiles(); 
+		totalBytes = folder.fileBytes(); 
 	}
 	
 	/**
@@ -41,23 +68,40 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 * Add a node to this on as a child
 	 * Sets the parent of child to this node
 	 * will not add child if it has the folder name  
+	 * A child that already has a parent is moved: it is removed from 
+	 * the old parent first, taking it out of the location index and 
+	 * taking its totals off the old ancestors. 
+	 * Will not move a node below itself 
 	 * @param child node to add 
 	 */
 	@Override
 	public boolean addChild(GenTreeNodeInterface<Folder> child) {
 		if(hasFolder(child.getValue().getName())) {
+			return false; 
+		}else {
 			try {
 				FolderTreeNode c = (FolderTreeNode) child; 
+				for(FolderTreeNode node = this; node != null; node = node.parent) {
+					if(node == c) {
+						return false; 
+					}
+				}
+				FolderTreeNode oldParent = c.getParent(); 
+				boolean moved = oldParent != null && oldParent.removeChild(c); 
 				c.setParent(this);
-				children.add(c);
+				if(!indexChild(c)) {
+					c.setParent(null); 
+					if(moved) {
+						oldParent.addChild(c); 
+					}else {
+						c.setParent(oldParent); 
+					}
+					return false; 
+				}
 				return true; 
 			}catch (Exception e) {
 				return false; 
 			}
-			
-		}else {
-			
-			return true; 
 		}
 	} 
 	
@@ -79,16 +123,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 * @return true if folder exists with folder name as child 
 	 */
 	public boolean hasFolder(String folderName) {
-		Iterator<FolderTreeNode> iter = getIterable(); 
-		boolean foundFile = false; 
-		while(iter.hasNext() && !foundFile) {
-			if(iter.next().getValue().getName().equals(folderName)) {
-				foundFile = true; 
-			}
-		}
-		
-		return foundFile; 
-			
+		return children.get(folderName) != null; 
 	}
 	
 	/**
@@ -97,17 +132,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 * @return true if node has a folder with the same name
 	 */
 	public boolean hasFolder(Folder folder) {
-		String folderName = folder.getName(); 
-		Iterator<FolderTreeNode> iter = getIterable(); 
-		boolean foundFile = false; 
-		while(iter.hasNext() && !foundFile) {
-			if(iter.next().getValue().getName().equals(folderName)) {
-				foundFile = true; 
-			}
-		}
-		
-		return foundFile; 
-			
+		return hasFolder(folder.getName()); 
 	}
 	
 	/**
@@ -117,19 +142,113 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 * @return child node with folder name 
 	 */
 	public FolderTreeNode getFolder(String folderName) {
-		Iterator<FolderTreeNode> iter = getIterable(); 
-		boolean foundFile = false; 
-		FolderTreeNode node = null; 
-		while(iter.hasNext() && !foundFile) {
-			FolderTreeNode next = (FolderTreeNode) iter.next();
-			if(next.getValue().getName().equals(folderName)) {
-				foundFile = true; 
-				node = next; 
-				
+		return children.get(folderName); 
+	}
+	
+	/**
+	 * Return true if the children can be read without holding 
+	 * the node's lock while another thread changes them
+	 * @return true if child reads need no lock
+	 */
+	boolean hasConcurrentChildren() {
+		return children.isConcurrent(); 
+	}
+	
+	/**
+	 * Add a node to the children and the tree's location index, 
+	 * unless another child has its name
+	 * @param child node to add
+	 * @return true if child was added
+	 */
+	private boolean indexChild(FolderTreeNode child) {
+		if(!children.add(child)) {
+			return false; 
+		}
+		if(tree != null) {
+			tree.indexSubtree(child); 
+			if(tree.getTextIndex() != null) {
+				tree.getTextIndex().addSubtree(child); 
 			}
 		}
-		
-		return node; 
+		addTotals(child.totalFiles, child.totalFolders, child.totalBytes); 
+		return true; 
+	}
+	
+	/**
+	 * Remove a node from the ordered children and the name index
+	 * @param child node to remove
+	 */
+	private void unindexChild(FolderTreeNode child) {
+		if(child.getTree() != null) {
+			if(child.getTree().getTextIndex() != null) {
+				child.getTree().getTextIndex().removeSubtree(child); 
+			}
+			child.getTree().unindexSubtree(child); 
+		}
+		if(children.remove(child)) {
+			addTotals(-child.totalFiles, -child.totalFolders, -child.totalBytes); 
+			if(child.parent == this) {
+				//changes below the removed child no longer count here
+				child.parent = null; 
+			}
+		}
+		treeChanged(); 
+	}
+	
+	/**
+	 * Add to the totals of this node and every ancestor
+	 * @param files change in amount of files
+	 * @param folders change in amount of folders
+	 * @param bytes change in bytes of text
+	 */
+	void addTotals(long files, long folders, long bytes) {
+		for(FolderTreeNode node = this; node != null; node = node.parent) {
+			if(files != 0) {
+				TOTAL_FILES.getAndAdd(node, files); 
+			}
+			if(folders != 0) {
+				TOTAL_FOLDERS.getAndAdd(node, folders); 
+			}
+			if(bytes != 0) {
+				TOTAL_BYTES.getAndAdd(node, bytes); 
+			}
+		}
+	}
+	
+	/**
+	 * Get amount of folders in this subtree, counting this one
+	 * @return folders in subtree
+	 */
+	public long getTotalFolders() {
+		return totalFolders; 
+	}
+	
+	/**
+	 * Get amount of files in this folder and every folder below it
+	 * @return files in subtree
+	 */
+	public long getTotalFiles() {
+		return totalFiles; 
+	}
+	
+	/**
+	 * Get amount of bytes of text, as UTF-8, of every file in this subtree
+	 * @return bytes in subtree
+	 */
+	public long getTotalBytes() {
+		return totalBytes; 
+	}
+	
+	/**
+	 * Move a child to a new name in the name index, 
+	 * keeps its place in the child order. 
+	 * Will not rename if another child already has the new name
+	 * @param child child node being renamed
+	 * @param newName name the child will have 
+	 * @return true if the child can take the new name
+	 */
+	boolean renameChild(FolderTreeNode child, String newName) {
+		return children.rename(child, newName); 
 	}
 	
 	/**
@@ -155,11 +274,46 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	}
 	
 	/**
-	 * Set folder of node
+	 * Set folder of node, 
+	 * will not change folder if the parent already 
+	 * has a different child with the folder's name
 	 * @param value folder to set node to
 	 */
 	public void setValue(Folder value) {
-		this.value = value;
+		FolderTree indexedIn = tree; 
+		if(indexedIn != null) {
+			indexedIn.unindexSubtree(this); 
+		}
+		if(parent == null || parent.renameChild(this, value.getName())) {
+			Folder old = this.value; 
+			this.value = value;
+			value.setNode(this);
+			addTotals(value.numberOfFiles() - old.numberOfFiles(), 0, value.fileBytes() - old.fileBytes()); 
+			if(indexedIn != null && indexedIn.getTextIndex() != null) {
+				indexedIn.getTextIndex().removeFolder(old); 
+				indexedIn.getTextIndex().addFolder(value); 
+			}
+			treeChanged(indexedIn); 
+		}
+		if(indexedIn != null) {
+			indexedIn.indexSubtree(this); 
+		}
+	}
+	
+	/**
+	 * Get the tree whose location index holds this node
+	 * @return tree of node, null if node is not indexed 
+	 */
+	FolderTree getTree() {
+		return tree;
+	}
+	
+	/**
+	 * Set the tree whose location index holds this node
+	 * @param tree tree of node
+	 */
+	void setTree(FolderTree tree) {
+		this.tree = tree;
 	}
 	
 	/**
@@ -179,6 +333,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 		try {
 			FolderTreeNode p = (FolderTreeNode) par; 
 			parent = p; 
+			treeChanged(); 
 			return true; 
 		}catch (Exception e){
 			return false; 
@@ -214,7 +369,10 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	}
 	
 	/**
-	 * get the node at the given index
+	 * get the node at the given index. 
+	 * Both kinds of child list read it straight from an array, 
+	 * the linked list takes O(log n) while removed children leave gaps in it. 
+	 * Use getIterable to go through all children 
 	 * @param index location of node
 	 * @return node at location 
 	 */
@@ -234,19 +392,12 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 * @return child node with given value, null if does not exist
 	 */
 	public FolderTreeNode getChild(Folder value){
-		boolean foundChild = false; 
-		FolderTreeNode outChild = null; 
-		int index = 0; 
-		while (!foundChild && index < numberOfChildren()) {
-			FolderTreeNode child = getChild(index); 
-			if(child.getValue().equals(value)) {
-				foundChild = true; 
-				outChild = child;
-			}
-			index ++; 
+		FolderTreeNode child = children.get(value.getName()); 
+		if(child != null && child.getValue().equals(value)) {
+			return child; 
+		}else {
+			return null; 
 		}
-		
-		return outChild; 
 	}
 	
 	/**
@@ -255,9 +406,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 */
 	@Override
 	public FolderTreeNode[] getChildren() {
-		FolderTreeNode[] returnArr = new FolderTreeNode[numberOfChildren()];
-		children.toArray(returnArr); 
-		return returnArr;
+		return children.toArray();
 	}
 	
 	/**
@@ -268,29 +417,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 */
 	@Override
 	public FolderTreeNode getElement(Folder value){
-		if(this.getValue().equals(value)) {
-			return this;
-		}else {
-			boolean foundChild = false; 
-			int index = 0; 
-			while (!foundChild && index < numberOfChildren()) {
-				FolderTreeNode child = getChild(index); 
-				if(child.getValue().equals(value)) {
-					foundChild = true; 
-					return child; 
-				}else {
-					FolderTreeNode childEle = child.getElement(value); 
-					if (childEle != null) {
-					
-						foundChild = true; 
-						return childEle; 
-					}
-				}
-				
-				index ++; 
-			}		
-		}
-		return null; 
+		return TreeTraversal.preOrder(this, FolderTreeNode::getIterable, node -> node.getValue().equals(value)); 
 	}
 
 	
@@ -303,7 +430,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	public boolean hasChild(GenTreeNodeInterface<Folder> node) {
 		try {
 			FolderTreeNode n = (FolderTreeNode) node; 
-			return children.contains(node);
+			return children.get(n.getValue().getName()) == n;
 		}catch (Exception e) {
 			return false; 
 		}
@@ -317,16 +444,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 */
 	@Override
 	public boolean hasChild(Folder value) {
-		boolean foundChild = false; 
-		int index = 0; 
-		while (!foundChild && index < numberOfChildren()) {
-			FolderTreeNode child = getChild(index); 
-			if(child.getValue().equals(value)) {
-				foundChild = true; 
-			}
-			index ++; 
-		}
-		return foundChild;
+		return getChild(value) != null;
 	}
 	
 	/**
@@ -336,23 +454,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 */
 	
 	public boolean hasElement(FolderTreeNode element) {
-		if(this.equals(element)) {
-			return true;
-		}else {
-			boolean foundChild = false; 
-			int index = 0; 
-			while (!foundChild && index < numberOfChildren()) {
-				FolderTreeNode child = getChild(index); 
-				if(child.equals(element)) {
-					foundChild = true; 
-				}else if (child.hasElement(element)) {
-					foundChild = true; 
-				}
-				index ++; 
-			}
-			return foundChild;
-		}
-		
+		return TreeTraversal.preOrder(this, FolderTreeNode::getIterable, node -> node.equals(element)) != null; 
 	}
 	
 	/**
@@ -361,22 +463,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 * @return true if element is found anywhere in the tree below this node
 	 */
 	public boolean hasElement(Folder element) {
-		if(this.getValue().equals(element)) {
-			return true;
-		}else {
-			boolean foundChild = false; 
-			int index = 0; 
-			while (!foundChild && index < numberOfChildren()) {
-				FolderTreeNode child = getChild(index); 
-				if(child.getValue().equals(element)) {
-					foundChild = true; 
-				}else if (child.hasElement(element)) {
-					foundChild = true; 
-				}
-				index ++; 
-			}
-			return foundChild;
-		}
+		return getElement(element) != null; 
 	}
 	
 	
@@ -392,8 +479,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 			return null; 
 		}else {
 			FolderTreeNode child = new FolderTreeNode(folder, this);
-			children.add(child); 
-			return child; 
+			return indexChild(child) ? child : null; 
 		}
 		
 		
@@ -408,21 +494,11 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 */
 	@Override
 	public boolean removeChild(Folder value) {
-		boolean foundChild = false; 
-		FolderTreeNode childToRemove = null; 
-		int index = 0; 
-		while (!foundChild && index < numberOfChildren()) {
-			FolderTreeNode child = getChild(index); 
-			if(child.getValue().equals(value)) {
-				foundChild = true; 
-				childToRemove = child; 
-			}
-			index ++; 
-		}
-		if(foundChild) {
-			children.remove(childToRemove);
+		FolderTreeNode childToRemove = getChild(value); 
+		if(childToRemove != null) {
+			unindexChild(childToRemove);
 		}
-		return foundChild;
+		return childToRemove != null;
 	}
 	
 	/**
@@ -434,8 +510,12 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 */
 	@Override
 	public boolean removeChild(GenTreeNodeInterface<Folder> node) {
-		// TODO Auto-generated method stub
-		return children.remove(node);
+		if(hasChild(node)) {
+			unindexChild((FolderTreeNode) node);
+			return true; 
+		}else {
+			return false; 
+		}
 	}
 	
 	/**
@@ -446,16 +526,84 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	}
 	
 	/**
-	 * Return a string of all ancestors with "/" symbol seperating them 
+	 * Return a string of all ancestors with "/" symbol seperating them. 
+	 * The string is kept until a folder is renamed, moved or removed in the same tree, 
+	 * so asking again does not walk up to the root. 
+	 * A kept string is read without locking, rebuilding one takes a lock 
+	 * shared by all nodes and stamps it with the generation read before starting 
 	 * @return location of node within tree as string 
 	 */
 	public String getLocationString() {
-		if (getParent() != null) {
-			return getParent().getLocationString() + "/" + toString(); 
+		long generation = getTreeGeneration(); 
+		if(locationCachedAt == generation) {
+			return location; 
+		}
+		synchronized(LOCATION_LOCK) {
+			//rebuild out of date ancestors from the top down without recursion
+			ArrayStack<FolderTreeNode> outOfDate = new ArrayStack<FolderTreeNode>(); 
+			FolderTreeNode node = this; 
+			while(node != null && node.locationCachedAt != generation) {
+				outOfDate.push(node); 
+				node = node.getParent(); 
+			}
+			String built = location; 
+			while(!outOfDate.isEmpty()) {
+				node = outOfDate.pop(); 
+				if (node.getParent() != null) {
+					built = node.getParent().location + "/" + node.toString(); 
+				}else {
+					built = node.toString();
+				}
+				node.location = built; 
+				node.locationCachedAt = generation; 
+			}
+			return built; 
+		}
+	}
+	
+	/**
+	 * Get a generation no tree has had before. 
+	 * Generations are counted per tree, so a change only empties the caches 
+	 * of its own tree, but every tree takes them from one counter, 
+	 * so a location kept in one tree can never match the generation of another 
+	 * @return new generation
+	 */
+	static long nextGeneration() {
+		return GENERATIONS.incrementAndGet(); 
+	}
+	
+	/**
+	 * Mark the cached location strings and paths of this node's tree as out of date, 
+	 * called when a folder is renamed, moved or removed 
+	 */
+	void treeChanged() {
+		treeChanged(tree); 
+	}
+	
+	/**
+	 * Mark the cached location strings and paths of a tree as out of date, 
+	 * or those of nodes in no tree if the tree is null 
+	 * @param changed tree that changed, null for nodes in no tree
+	 */
+	static void treeChanged(FolderTree changed) {
+		if(changed != null) {
+			changed.changed(); 
 		}else {
-			return toString();
+			detachedGeneration = nextGeneration(); 
 		}
-		
+	}
+	
+	/**
+	 * Get the generation of this node's tree, or the one shared 
+	 * by all nodes in no tree, caches built at a different generation are out of date
+	 * @return current generation of the node's tree
+	 */
+	long getTreeGeneration() {
+		FolderTree indexedIn = tree; 
+		if(indexedIn != null) {
+			return indexedIn.getGeneration(); 
+		}
+		return detachedGeneration; 
 	}
 
 	/**
@@ -473,15 +621,13 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 	 *
 	 */
 	private class ChildIterator implements Iterator<FolderTreeNode>{
-		int index; 
-		FolderTreeNode node; 
+		Iterator<FolderTreeNode> iter; 
 		/**
-		 * Create iterator starting at index 0 
+		 * Create iterator starting at first child 
 		 * @param n node that iterator operates on
 		 */
 		public ChildIterator(FolderTreeNode n ) {
-			index= 0; 
-			node = n; 
+			iter = n.children.iterator(); 
 		}
 		
 		/**
@@ -489,7 +635,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 		 */
 		@Override
 		public boolean hasNext() {
-			return index < node.numberOfChildren(); 
+			return iter.hasNext(); 
 		}
 		
 		/**
@@ -501,9 +647,7 @@ public class FolderTreeNode implements GenTreeNodeInterface<Folder> {
 			if(!hasNext()) {
 				throw new NoSuchElementException(); 
 			}else {
-				FolderTreeNode child = node.getChild(index); 
-				index ++; 
-				return child;
+				return iter.next();
 			}
 			
 		}
@@ -155,29 +155,7 @@ public class GeneralTreeNode<T> implements GenTreeNodeInterface<T> {
 	 */
 	//@Override
 	public GeneralTreeNode<T> getElement(T value){
-		if(this.getValue().equals(value)) {
-			return this;
-		}else {
-			boolean foundChild = false; 
-			int index = 0; 
-			while (!foundChild && index < numberOfChildren()) {
-				GeneralTreeNode<T> child = getChild(index); 
-				if(child.getValue().equals(value)) {
-					foundChild = true; 
-					return child; 
-				}else {
-					GeneralTreeNode<T> childEle = child.getElement(value); 
-					if (childEle != null) {
-					
-						foundChild = true; 
-						return childEle; 
-					}
-				}
-				
-				index ++; 
-			}		
-		}
-		return null; 
+		return TreeTraversal.preOrder(this, GeneralTreeNode::getIterable, node -> node.getValue().equals(value)); 
 	}
 
 	
@@ -223,23 +201,7 @@ public class GeneralTreeNode<T> implements GenTreeNodeInterface<T> {
 	 */
 	
 	public boolean hasElement(GeneralTreeNode<T> element) {
-		if(this.equals(element)) {
-			return true;
-		}else {
-			boolean foundChild = false; 
-			int index = 0; 
-			while (!foundChild && index < numberOfChildren()) {
-				GeneralTreeNode<T> child = getChild(index); 
-				if(child.equals(element)) {
-					foundChild = true; 
-				}else if (child.hasElement(element)) {
-					foundChild = true; 
-				}
-				index ++; 
-			}
-			return foundChild;
-		}
-		
+		return TreeTraversal.preOrder(this, GeneralTreeNode::getIterable, node -> node.equals(element)) != null; 
 	}
 	
 	/**
@@ -248,22 +210,7 @@ public class GeneralTreeNode<T> implements GenTreeNodeInterface<T> {
 	 * @return true if element is found anywhere in the tree below this node
 	 */
 	public boolean hasElement(T element) {
-		if(this.getValue().equals(element)) {
-			return true;
-		}else {
-			boolean foundChild = false; 
-			int index = 0; 
-			while (!foundChild && index < numberOfChildren()) {
-				GeneralTreeNode<T> child = getChild(index); 
-				if(child.getValue().equals(element)) {
-					foundChild = true; 
-				}else if (child.hasElement(element)) {
-					foundChild = true; 
-				}
-				index ++; 
-			}
-			return foundChild;
-		}
+		return getElement(element) != null; 
 	}
 	
 	/**
@@ -0,0 +1,208 @@
+package FileSystemPackage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the lines of files that match a regular expression,
+ * in a folder or in a folder and every folder below it.
+ *
+ * Each folder is searched by its own fork-join task, which forks a task
+ * for each child folder before searching its own files, so a large tree is
+ * spread over every thread of the pool. Matching lines are handed out
+ * in the same order every time: a folder's files in order, then each child
+ * folder and everything below it in order. A folder's lines are handed out
+ * as soon as it and the folders before it are done, while the rest of the
+ * tree is still being searched.
+ * @author fiona
+ *
+ */
+public class Grep {
+	FolderTree tree;
+	Pattern pattern;
+	ForkJoinPool pool;
+
+	/**
+	 * Create a search for a compiled pattern
+	 * @param tree tree holding the folders searched, for their locks
+	 * @param pattern pattern to find, matched against each line
+	 * @param pool pool running the search tasks
+	 */
+	public Grep(FolderTree tree, Pattern pattern, ForkJoinPool pool) {
+		this.tree = tree;
+		this.pattern = pattern;
+		this.pool = pool;
+	}
+
+	/**
+	 * Compile a pattern the way grep matches it, with ^ and $ at the start
+	 * and end of each line
+	 * @param regex regular expression
+	 * @return compiled pattern
+	 * @throws java.util.regex.PatternSyntaxException if regex is not valid
+	 */
+	public static Pattern compile(String regex) {
+		return Pattern.compile(regex, Pattern.MULTILINE);
+	}
+
+	/**
+	 * Search the files of a folder, and of every folder below it if recursive,
+	 * giving each matching line to output as "location/file:line number:line"
+	 * @param start folder to search
+	 * @param recursive true to search every folder below start
+	 * @param output receives matching lines in order, on the calling thread
+	 * @return amount of matching lines
+	 */
+	public long search(FolderTreeNode start, boolean recursive, Consumer<String> output) {
+		Result first = new Result();
+		pool.execute(new FolderSearch(start, first, recursive));
+		long found = 0;
+		ArrayDeque<Result> waiting = new ArrayDeque<Result>();
+		waiting.push(first);
+		while(!waiting.isEmpty()) {
+			Result result = waiting.pop();
+			result.done.join();
+			for(String line: result.lines) {
+				output.accept(line);
+				found ++;
+			}
+			Result[] children = result.children;
+			for(int i = children.length - 1; i >= 0; i--) {
+				waiting.push(children[i]);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the matching lines of one file
+	 * @param file file to search
+	 * @param location location of the file's folder
+	 * @param matcher matcher of pattern, reset to the file's text
+	 * @param lines list matching lines are added to
+	 */
+	private static void searchFile(File file, String location, Matcher matcher, ArrayList<String> lines) {
+		String text = file.getText();
+		int length = text.length();
+		if(length == 0) {
+			return;
+		}
+		boolean endsWithLine = text.charAt(length - 1) == '\n';
+		matcher.reset(text);
+		int lineNumber = 1;
+		int counted = 0;
+		int from = 0;
+		while(from < length && matcher.find(from)) {
+			int start = matcher.start();
+			if(start == length && endsWithLine) {
+				//an empty match after the last line break is not a line
+				break;
+			}
+			for(int i = counted; i < start; i++) {
+				if(text.charAt(i) == '\n') {
+					lineNumber ++;
+				}
+			}
+			int lineStart = start == 0 ? 0 : text.lastIndexOf('\n', start - 1) + 1;
+			int lineEnd = text.indexOf('\n', start);
+			if(lineEnd < 0) {
+				lineEnd = length;
+			}
+			lines.add(location + "/" + file.getFileName() + ":" + lineNumber + ":" + text.substring(lineStart, lineEnd));
+			counted = lineEnd;
+			from = lineEnd + 1;
+			if(lineEnd < length) {
+				lineNumber ++;
+				counted = lineEnd + 1;
+			}
+		}
+	}
+
+	/**
+	 * Matching lines of one folder and the results of its children,
+	 * filled in by its task before done completes
+	 */
+	private static class Result {
+		static final Result[] NONE = new Result[0];
+		final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		ArrayList<String> lines = new ArrayList<String>(0);
+		Result[] children = NONE;
+	}
+
+	/**
+	 * Task searching the files of one folder
+	 * after forking a task for each child folder
+	 */
+	private class FolderSearch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		FolderTreeNode node;
+		Result result;
+		boolean recursive;
+
+		/**
+		 * Create a task for a folder
+		 * @param node folder to search
+		 * @param result result the task fills in
+		 * @param recursive true to also search the folders below
+		 */
+		FolderSearch(FolderTreeNode node, Result result, boolean recursive) {
+			this.node = node;
+			this.result = result;
+			this.recursive = recursive;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				File[] files;
+				FolderTreeNode[] children;
+				Lock lock = tree.getLock(node).readLock();
+				lock.lock();
+				try {
+					Folder folder = node.getValue();
+					files = new File[folder.numberOfFiles()];
+					Iterator<File> iterator = folder.getFileIterator();
+					for(int i = 0; i < files.length; i++) {
+						files[i] = iterator.next();
+					}
+					children = recursive ? node.children.toArray() : null;
+				}finally {
+					lock.unlock();
+				}
+
+				if(children != null && children.length > 0) {
+					Result[] childResults = new Result[children.length];
+					for(int i = 0; i < children.length; i++) {
+						childResults[i] = new Result();
+					}
+					result.children = childResults;
+					//forked last to first, so this thread takes up the first child next
+					for(int i = children.length - 1; i >= 0; i--) {
+						new FolderSearch(children[i], childResults[i], true).fork();
+					}
+				}
+
+				if(files.length > 0) {
+					String location = node.getLocationString();
+					Matcher matcher = pattern.matcher("");
+					ArrayList<String> lines = new ArrayList<String>();
+					for(File file: files) {
+						searchFile(file, location, matcher, lines);
+					}
+					result.lines = lines;
+				}
+				result.done.complete(null);
+			}catch (RuntimeException e) {
+				result.done.completeExceptionally(e);
+			}
+		}
+	}
+}
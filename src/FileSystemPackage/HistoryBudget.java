@@ -0,0 +1,298 @@
+package FileSystemPackage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the memory used by all file histories under a budget.
+ * When a history goes over its own budget, or all histories together
+ * go over the global budget, the oldest edits are either written to
+ * a spill file or dropped, depending on the policy.
+ *
+ * The total is an atomic counter, so pushing and popping edits only
+ * takes the lock of their own history. Only going over the global budget
+ * takes the eviction lock, which then locks the least recently used
+ * histories one at a time. The eviction lock is never taken while
+ * holding the lock of a history, so histories can not deadlock on it.
+ *
+ * Edits are appended to the spill file, which is cut back to nothing
+ * once no history holds a spilled edit, for example when every history
+ * has been cleared or has read its spilled edits back.
+ * @author fiona
+ *
+ */
+public class HistoryBudget {
+	/**
+	 * What happens to edits pushed out of memory
+	 */
+	public enum Policy {
+		SPILL, DROP
+	}
+
+	public static final long DEFAULT_FILE_BUDGET = 4L * 1024 * 1024;
+	public static final long DEFAULT_GLOBAL_BUDGET = 64L * 1024 * 1024;
+	private static final int RECORD_HEADER = 12;
+
+	private static volatile long fileBudget = DEFAULT_FILE_BUDGET;
+	private static volatile long globalBudget = DEFAULT_GLOBAL_BUDGET;
+	private static volatile Policy policy = Policy.SPILL;
+	private static final AtomicLong totalBytes = new AtomicLong();
+	private static final Set<EditHistory> histories = ConcurrentHashMap.newKeySet();
+	private static final Object evictLock = new Object();
+	private static final ReentrantReadWriteLock spillLock = new ReentrantReadWriteLock();
+	private static final AtomicLong spillEnd = new AtomicLong();
+	private static final AtomicLong liveSpilled = new AtomicLong();
+	private static volatile FileChannel spillFile;
+
+	/**
+	 * Get the most bytes one history keeps in memory
+	 * @return per file budget in bytes
+	 */
+	public static long getFileBudget() {
+		return fileBudget;
+	}
+
+	/**
+	 * Set the most bytes one history keeps in memory
+	 * @param bytes per file budget in bytes
+	 */
+	public static void setFileBudget(long bytes) {
+		fileBudget = bytes;
+	}
+
+	/**
+	 * Get the most bytes all histories together keep in memory
+	 * @return global budget in bytes
+	 */
+	public static long getGlobalBudget() {
+		return globalBudget;
+	}
+
+	/**
+	 * Set the most bytes all histories together keep in memory
+	 * @param bytes global budget in bytes
+	 */
+	public static void setGlobalBudget(long bytes) {
+		globalBudget = bytes;
+	}
+
+	/**
+	 * Get what happens to edits pushed out of memory
+	 * @return eviction policy
+	 */
+	public static Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Set what happens to edits pushed out of memory
+	 * @param newPolicy eviction policy
+	 */
+	public static void setPolicy(Policy newPolicy) {
+		policy = newPolicy;
+	}
+
+	/**
+	 * Get bytes of history in memory across all files
+	 * @return total bytes in memory
+	 */
+	public static long getTotalBytes() {
+		return totalBytes.get();
+	}
+
+	/**
+	 * Get amount of spilled edits some history can still read back
+	 * @return live edits in the spill file
+	 */
+	public static long getLiveSpilled() {
+		return liveSpilled.get();
+	}
+
+	/**
+	 * Get bytes written to the spill file since it was last cut back
+	 * @return length of spill file in bytes
+	 */
+	public static long getSpillFileBytes() {
+		return spillEnd.get();
+	}
+
+	/**
+	 * Note whether a history holds edits in memory, 
+	 * so the global budget can evict from it. 
+	 * Called while holding the lock of the history
+	 * @param history history that changed
+	 */
+	static void track(EditHistory history) {
+		if(history.bytes > 0) {
+			histories.add(history);
+		}else {
+			histories.remove(history);
+		}
+	}
+
+	/**
+	 * Add a change in the memory used by a history to the total, 
+	 * and push edits out of memory if the global budget is exceeded. 
+	 * Must not be called while holding the lock of a history
+	 * @param change bytes added, negative if bytes were freed
+	 */
+	static void update(long change) {
+		if(change != 0 && totalBytes.addAndGet(change) > globalBudget) {
+			evictGlobal();
+		}
+	}
+
+	/**
+	 * Push the oldest edits of the least recently used histories
+	 * out of memory until the total is within the global budget
+	 */
+	private static void evictGlobal() {
+		synchronized(evictLock) {
+			if(totalBytes.get() <= globalBudget) {
+				return;
+			}
+			//order by when each history was last used, read once so the order can not change while sorting
+			EditHistory[] eldest = histories.toArray(new EditHistory[0]);
+			long[] used = new long[eldest.length];
+			Integer[] order = new Integer[eldest.length];
+			for(int i = 0; i < eldest.length; i++) {
+				used[i] = eldest[i].lastUsed;
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Long.compare(used[a], used[b]));
+			for(int i = 0; i < order.length && totalBytes.get() > globalBudget; i++) {
+				EditHistory history = eldest[order[i]];
+				synchronized(history) {
+					long freed = 1;
+					while(totalBytes.get() > globalBudget && freed > 0) {
+						freed = history.evictOldest();
+						totalBytes.addAndGet(-freed);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove a history from the budget, 
+	 * called while holding the lock of the history as it is cleared
+	 * @param history history being cleared
+	 */
+	static void release(EditHistory history) {
+		totalBytes.addAndGet(-history.bytes);
+		histories.remove(history);
+		unspill(history.spilledCount);
+	}
+
+	/**
+	 * Open the spill file the first time an edit is spilled
+	 * @return spill file
+	 * @throws IOException if the file can not be created
+	 */
+	private static synchronized FileChannel spillFile() throws IOException {
+		if(spillFile == null) {
+			Path path = Files.createTempFile("history", ".spill");
+			path.toFile().deleteOnExit();
+			spillFile = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return spillFile;
+	}
+
+	/**
+	 * Write an edit to the end of the spill file
+	 * @param edit edit to write
+	 * @return location of the edit in the spill file, -1 if it could not be written
+	 */
+	static long spill(TextEdit edit) {
+		byte[] text = edit.removed.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + text.length);
+		record.putInt(edit.start).putInt(edit.insertedLength).putInt(text.length).put(text).flip();
+		spillLock.readLock().lock();
+		try {
+			FileChannel file = spillFile();
+			long offset = spillEnd.getAndAdd(record.remaining());
+			while(record.hasRemaining()) {
+				file.write(record, offset + record.position());
+			}
+			liveSpilled.incrementAndGet();
+			return offset;
+		}catch (IOException e) {
+			return -1;
+		}finally {
+			spillLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Read an edit back from the spill file. 
+	 * The edit is still counted as live until unspill is called for it
+	 * @param offset location of the edit in the spill file
+	 * @return edit at offset, null if it could not be read
+	 */
+	static TextEdit load(long offset) {
+		spillLock.readLock().lock();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+			readFully(header, offset);
+			int start = header.getInt();
+			int insertedLength = header.getInt();
+			ByteBuffer text = ByteBuffer.allocate(header.getInt());
+			readFully(text, offset + RECORD_HEADER);
+			return new TextEdit(start, new String(text.array(), StandardCharsets.UTF_8), insertedLength);
+		}catch (IOException e) {
+			return null;
+		}finally {
+			spillLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Note that spilled edits were read back, dropped or cleared, 
+	 * and cut the spill file back to nothing once no edit in it is live
+	 * @param edits amount of spilled edits no longer needed
+	 */
+	static void unspill(long edits) {
+		if(edits == 0 || liveSpilled.addAndGet(-edits) != 0) {
+			return;
+		}
+		spillLock.writeLock().lock();
+		try {
+			//an edit may have been spilled while waiting for the lock
+			if(liveSpilled.get() == 0 && spillFile != null) {
+				spillFile.truncate(0);
+				spillEnd.set(0);
+			}
+		}catch (IOException e) {
+			//kept as it is, written over once edits are spilled again
+			spillEnd.set(0);
+		}finally {
+			spillLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Fill a buffer from the spill file
+	 * @param buffer buffer to fill
+	 * @param offset location in spill file to read from
+	 * @throws IOException if the file ends before the buffer is full
+	 */
+	private static void readFully(ByteBuffer buffer, long offset) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = spillFile.read(buffer, offset + buffer.position());
+			if(read < 0) {
+				throw new IOException("Spill file ended at " + (offset + buffer.position()));
+			}
+		}
+		buffer.flip();
+	}
+}
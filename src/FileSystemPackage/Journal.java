@@ -0,0 +1,380 @@
+package FileSystemPackage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of every change made to folders and files,
+ * so changes made since the last snapshot can be replayed after a crash.
+ *
+ * Records are collected in memory and written to the journal file when
+ * the command line flushes its output, so the changes are on disk before
+ * the user sees their results. Writers that sync while another sync is
+ * forcing the file wait for it and usually find their records already
+ * forced, so a burst of changes costs one force.
+ *
+ * A record is its length, a CRC32 of the rest, its sequence number,
+ * the change and the UTF-8 strings it needs. Replay stops at the first
+ * record that is cut short or does not match its CRC.
+ * @author fiona
+ *
+ */
+public class Journal implements Closeable {
+	/**
+	 * Changes that are journaled. Undo and redo are journaled as a SET
+	 * of the text they lead to, since the edit history they use is not
+	 * kept in snapshots; UNDO and REDO are only replayed from older journals
+	 */
+	public enum Op {
+		MKDIR, MKFIL, SET, ADD, UNDO, REDO, CLEAR
+	}
+
+	/**
+	 * When the journal file is forced to disk
+	 */
+	public enum Policy {
+		/** force on every sync, before command output is shown */
+		COMMAND,
+		/** force from a background thread every interval */
+		INTERVAL,
+		/** never force, leave it to the operating system */
+		NONE
+	}
+
+	public static final int HEADER = 8;
+	public static final int MIN_RECORD = 8 + 1 + 12;
+	public static final int INITIAL_BUFFER = 1 << 16;
+
+	FileChannel channel;
+	Policy policy;
+	ByteBuffer pending;
+	ByteBuffer writing;
+	long sequence;
+	long writtenSequence;
+	long forcedSequence;
+	long forces;
+	Object syncLock;
+	Thread forcer;
+	volatile boolean open;
+
+	/**
+	 * Open a journal file, creating it if it does not exist.
+	 * Records are appended after the last valid record in the file
+	 * @param path journal file
+	 * @param policy when the file is forced to disk
+	 * @param intervalMillis milliseconds between forces for the INTERVAL policy
+	 * @throws IOException if the file can not be opened
+	 */
+	public Journal(Path path, Policy policy, long intervalMillis) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.policy = policy;
+		pending = ByteBuffer.allocate(INITIAL_BUFFER);
+		writing = ByteBuffer.allocate(INITIAL_BUFFER);
+		sequence = 0;
+		writtenSequence = 0;
+		forcedSequence = 0;
+		forces = 0;
+		syncLock = new Object();
+		open = true;
+		channel.position(channel.size());
+		if(policy == Policy.INTERVAL) {
+			forcer = new Thread(() -> forceEvery(intervalMillis), "journal-force");
+			forcer.setDaemon(true);
+			forcer.start();
+		}
+	}
+
+	/**
+	 * Get when the journal file is forced to disk
+	 * @return force policy
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Get the sequence number of the last record appended
+	 * @return last sequence number
+	 */
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Get the amount of times the file has been forced to disk
+	 * @return forces done
+	 */
+	public long getForces() {
+		return forces;
+	}
+
+	/**
+	 * Record a change in memory, it is written on the next sync
+	 * @param op change made
+	 * @param location location string of the folder changed
+	 * @param name name of the folder or file made or changed
+	 * @param text text of the change, empty if the change has none
+	 * @return sequence number of the record
+	 */
+	public synchronized long append(Op op, String location, String name, String text) {
+		byte[] locationBytes = location.getBytes(StandardCharsets.UTF_8);
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+		int length = MIN_RECORD + locationBytes.length + nameBytes.length + textBytes.length;
+		if(pending.remaining() < HEADER + length) {
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER + length));
+			pending.flip();
+			bigger.put(pending);
+			pending = bigger;
+		}
+		sequence ++;
+		int start = pending.position();
+		pending.putInt(length).putInt(0).putLong(sequence).put((byte) op.ordinal());
+		pending.putInt(locationBytes.length).put(locationBytes);
+		pending.putInt(nameBytes.length).put(nameBytes);
+		pending.putInt(textBytes.length).put(textBytes);
+		CRC32 crc = new CRC32();
+		crc.update(pending.array(), start + HEADER, length);
+		pending.putInt(start + 4, (int) crc.getValue());
+		return sequence;
+	}
+
+	/**
+	 * Write records appended so far to the file,
+	 * forcing them to disk under the COMMAND policy
+	 * @throws IOException if the file can not be written
+	 */
+	public void sync() throws IOException {
+		write(policy == Policy.COMMAND);
+	}
+
+	/**
+	 * Write records appended so far to the file and optionally force them.
+	 * Only one thread writes at a time, the others wait and return
+	 * without writing if their records were written meanwhile
+	 * @param force true to force the file to disk
+	 * @throws IOException if the file can not be written
+	 */
+	private void write(boolean force) throws IOException {
+		long target;
+		synchronized(this) {
+			target = sequence;
+		}
+		synchronized(syncLock) {
+			if(forcedSequence >= target || (!force && writtenSequence >= target)) {
+				return;
+			}
+			long upTo;
+			synchronized(this) {
+				ByteBuffer full = pending;
+				pending = writing;
+				writing = full;
+				upTo = sequence;
+			}
+			writing.flip();
+			while(writing.hasRemaining()) {
+				channel.write(writing);
+			}
+			writing.clear();
+			writtenSequence = upTo;
+			if(force) {
+				channel.force(false);
+				forcedSequence = upTo;
+				forces ++;
+			}
+		}
+	}
+
+	/**
+	 * Force written records to disk every interval until closed
+	 * @param intervalMillis milliseconds between forces
+	 */
+	private void forceEvery(long intervalMillis) {
+		long interval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		while(open) {
+			//parked rather than slept, as interrupting a thread in force closes the channel
+			LockSupport.parkNanos(this, interval);
+			if(!open) {
+				return;
+			}
+			try {
+				write(true);
+			}catch (IOException e) {
+				//try again on the next interval
+			}
+		}
+	}
+
+	/**
+	 * Apply every record in the file with a sequence number after the given one
+	 * to a tree, then cut off anything after the last valid record
+	 * @param tree tree to apply changes to
+	 * @param after sequence number already in the tree
+	 * @return amount of records applied
+	 * @throws IOException if the file can not be read
+	 */
+	public int replay(FolderTree tree, long after) throws IOException {
+		long size = channel.size();
+		long position = 0;
+		int applied = 0;
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while(position + HEADER <= size) {
+			header.clear();
+			readFully(header, position);
+			int length = header.getInt();
+			int expected = header.getInt();
+			if(length < MIN_RECORD || position + HEADER + length > size) {
+				break;
+			}
+			ByteBuffer record = ByteBuffer.allocate(length);
+			readFully(record, position + HEADER);
+			CRC32 crc = new CRC32();
+			crc.update(record.array());
+			if((int) crc.getValue() != expected) {
+				break;
+			}
+			long recordSequence = record.getLong();
+			Op op = Op.values()[record.get()];
+			String location = readString(record);
+			String name = readString(record);
+			String text = readString(record);
+			if(recordSequence > after) {
+				apply(tree, op, location, name, text);
+				applied ++;
+			}
+			synchronized(this) {
+				sequence = Math.max(sequence, recordSequence);
+			}
+			position += HEADER + length;
+		}
+		channel.truncate(position);
+		channel.position(position);
+		synchronized(this) {
+			sequence = Math.max(sequence, after);
+			writtenSequence = sequence;
+			forcedSequence = sequence;
+		}
+		return applied;
+	}
+
+	/**
+	 * Fill a buffer from the journal file
+	 * @param buffer buffer to fill
+	 * @param offset location in the file to read from
+	 * @throws IOException if the file ends before the buffer is full
+	 */
+	private void readFully(ByteBuffer buffer, long offset) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, offset + buffer.position());
+			if(read < 0) {
+				throw new IOException("Journal ended at " + (offset + buffer.position()));
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Read a length prefixed UTF-8 string
+	 * @param buffer buffer to read from
+	 * @return string read
+	 */
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Apply one change to a tree, changes to folders or files
+	 * that no longer exist are skipped
+	 * @param tree tree to change
+	 * @param op change to make
+	 * @param location location string of the folder changed
+	 * @param name name of the folder or file
+	 * @param text text of the change
+	 */
+	static void apply(FolderTree tree, Op op, String location, String name, String text) {
+		FolderTreeNode node = tree.getFolder(location);
+		if(node == null) {
+			return;
+		}
+		if(op == Op.MKDIR) {
+			node.addNewFolder(name);
+			return;
+		}else if(op == Op.MKFIL) {
+			node.getValue().addFile(name);
+			return;
+		}
+		File file = node.getValue().getFile(name);
+		if(file == null) {
+			return;
+		}
+		switch(op) {
+		case SET:
+			file.setText(text);
+			break;
+		case ADD:
+			file.addText(text);
+			break;
+		case UNDO:
+			file.undo();
+			break;
+		case REDO:
+			file.redo();
+			break;
+		case CLEAR:
+			file.clear();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Remove every record, called once the changes are saved in a snapshot
+	 * @throws IOException if the file can not be cut
+	 */
+	public void reset() throws IOException {
+		synchronized(syncLock) {
+			synchronized(this) {
+				pending.clear();
+				writtenSequence = sequence;
+				forcedSequence = sequence;
+			}
+			channel.truncate(0);
+			channel.position(0);
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Write and force every record, then close the file
+	 * @throws IOException if the file can not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		open = false;
+		if(forcer != null) {
+			LockSupport.unpark(forcer);
+			try {
+				forcer.join();
+			}catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(policy == Policy.NONE) {
+			write(false);
+		}else {
+			write(true);
+		}
+		channel.close();
+	}
+}
@@ -0,0 +1,144 @@
+package FileSystemPackage;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of times in nanoseconds that many threads can add to at once.
+ * Each power of two is split into SUB_BUCKETS buckets, so a percentile
+ * is read to within an eighth of its value. Every bucket is a LongAdder,
+ * a counter striped across threads, so adding a time never waits on a lock
+ * and threads adding to the same bucket rarely touch the same memory.
+ * Times over MAX_NANOS are counted in the last bucket.
+ * @author fiona
+ *
+ */
+public class LatencyHistogram {
+	public static final int SUB_BITS = 3;
+	public static final int SUB_BUCKETS = 1 << SUB_BITS;
+	public static final int MAX_EXPONENT = 36;
+	public static final long MAX_NANOS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	LongAdder[] buckets;
+	LongAdder count;
+	LongAdder sum;
+	LongAccumulator max;
+
+	/**
+	 * Create an empty histogram
+	 */
+	public LatencyHistogram() {
+		buckets = new LongAdder[indexOf(MAX_NANOS) + 1];
+		for(int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new LongAccumulator(Long::max, 0);
+	}
+
+	/**
+	 * Get the bucket a time is counted in
+	 * @param nanos time, at least 0
+	 * @return index of bucket
+	 */
+	static int indexOf(long nanos) {
+		if(nanos < SUB_BUCKETS) {
+			return (int) Math.max(0, nanos);
+		}
+		nanos = Math.min(nanos, MAX_NANOS);
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Get the largest time counted in a bucket
+	 * @param index index of bucket
+	 * @return nanoseconds
+	 */
+	static long upperBound(int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+		int sub = index % SUB_BUCKETS;
+		long start = (1L << exponent) + ((long) sub << (exponent - SUB_BITS));
+		return start + (1L << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Count a time
+	 * @param nanos time in nanoseconds
+	 */
+	public void add(long nanos) {
+		buckets[indexOf(nanos)].increment();
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Get amount of times counted
+	 * @return count of times
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Get all times counted added together
+	 * @return nanoseconds
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Get the longest time counted
+	 * @return nanoseconds, 0 if none
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Get the time a given share of counted times took at most,
+	 * as the top of the bucket holding it and never more than the longest time.
+	 * Times still being added while this reads may or may not be included
+	 * @param share share of times, 0 to 1
+	 * @return nanoseconds, 0 if none
+	 */
+	public long percentile(double share) {
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for(int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(share * total));
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Forget every time counted
+	 */
+	public void reset() {
+		for(LongAdder bucket: buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+}
@@ -0,0 +1,248 @@
+package FileSystemPackage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Child list kept in an array list for the order,
+ * a hash map from child to its slot in the array
+ * and a hash map from folder name for lookups.
+ * Removing a child leaves an empty slot, so adding and removing are O(1),
+ * and empty slots are closed up by the removal that makes them half the array.
+ * While there are empty slots a Fenwick tree counts the children in the slots,
+ * so reading by index is O(1) without empty slots and O(log n) with them.
+ * Only adding and removing change the list, reads never do, so several
+ * threads can read it at once while holding the node's read lock.
+ * Threads must hold the node's lock to read it while it changes
+ * @author fiona
+ *
+ */
+public class LinkedChildList implements ChildList {
+	ArrayList<FolderTreeNode> order; 
+	HashMap<FolderTreeNode, Integer> slots; 
+	HashMap<String, FolderTreeNode> childIndex; 
+	int emptySlots; 
+	int[] occupied; 
+
+	/**
+	 * Create an empty list
+	 */
+	public LinkedChildList() {
+		order = new ArrayList<FolderTreeNode>(); 
+		slots = new HashMap<FolderTreeNode, Integer>(); 
+		childIndex = new HashMap<String, FolderTreeNode>(); 
+		emptySlots = 0; 
+		occupied = null; 
+	}
+
+	@Override
+	public boolean add(FolderTreeNode child) {
+		String name = child.getValue().getName(); 
+		if(childIndex.containsKey(name) || slots.containsKey(child)) {
+			return false; 
+		}
+		slots.put(child, order.size()); 
+		order.add(child); 
+		childIndex.put(name, child); 
+		if(occupied != null) {
+			appendOccupied(order.size()); 
+		}
+		return true; 
+	}
+
+	@Override
+	public boolean remove(FolderTreeNode child) {
+		Integer slot = slots.remove(child); 
+		if(slot == null) {
+			return false; 
+		}
+		order.set(slot, null); 
+		emptySlots ++; 
+		childIndex.remove(child.getValue().getName(), child); 
+		if(emptySlots > order.size() / 2) {
+			compact(); 
+		}else {
+			if(occupied == null) {
+				buildOccupied(); 
+			}
+			for(int i = slot + 1; i <= order.size(); i += i & -i) {
+				occupied[i] --; 
+			}
+		}
+		return true; 
+	}
+	
+	/**
+	 * Build the Fenwick tree counting the children in the slots, 
+	 * as it was before the last removal emptied its slot
+	 */
+	private void buildOccupied() {
+		int n = order.size(); 
+		occupied = new int[Math.max(16, n + 1)]; 
+		for(int i = 1; i <= n; i++) {
+			occupied[i] ++; 
+			int up = i + (i & -i); 
+			if(up <= n) {
+				occupied[up] += occupied[i]; 
+			}
+		}
+	}
+	
+	/**
+	 * Add the slot just filled at the end of the array to the Fenwick tree
+	 * @param position position of slot, counted from 1
+	 */
+	private void appendOccupied(int position) {
+		if(position >= occupied.length) {
+			occupied = Arrays.copyOf(occupied, occupied.length * 2); 
+		}
+		//the entry covers the slots after position minus its lowest bit, up to position
+		int count = 1; 
+		int low = position - (position & -position); 
+		for(int i = position - 1; i > low; i -= i & -i) {
+			count += occupied[i]; 
+		}
+		occupied[position] = count; 
+	}
+	
+	/**
+	 * Find the slot of the child at an index of the order using the Fenwick tree
+	 * @param index index of child
+	 * @return slot of child
+	 */
+	private int slotOf(int index) {
+		int n = order.size(); 
+		int position = 0; 
+		int remaining = index + 1; 
+		for(int step = Integer.highestOneBit(n); step > 0; step >>= 1) {
+			if(position + step <= n && occupied[position + step] < remaining) {
+				position += step; 
+				remaining -= occupied[position]; 
+			}
+		}
+		return position; 
+	}
+
+	/**
+	 * Close up the empty slots left by removed children, keeping their order
+	 */
+	private void compact() {
+		if(emptySlots == 0) {
+			return; 
+		}
+		ArrayList<FolderTreeNode> compacted = new ArrayList<FolderTreeNode>(slots.size()); 
+		for(FolderTreeNode child: order) {
+			if(child != null) {
+				slots.put(child, compacted.size()); 
+				compacted.add(child); 
+			}
+		}
+		order = compacted; 
+		emptySlots = 0; 
+		occupied = null; 
+	}
+
+	@Override
+	public boolean rename(FolderTreeNode child, String newName) {
+		FolderTreeNode existing = childIndex.get(newName); 
+		if(existing != null) {
+			return existing == child; 
+		}else {
+			childIndex.remove(child.getValue().getName(), child); 
+			childIndex.put(newName, child); 
+			return true; 
+		}
+	}
+
+	@Override
+	public FolderTreeNode get(String name) {
+		return childIndex.get(name); 
+	}
+
+	@Override
+	public FolderTreeNode get(int index) {
+		if (index < 0 || index >= slots.size()) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds!");
+		}
+		if(emptySlots == 0) {
+			return order.get(index); 
+		}
+		return order.get(slotOf(index)); 
+	}
+
+	@Override
+	public int size() {
+		return slots.size(); 
+	}
+
+	@Override
+	public FolderTreeNode[] toArray() {
+		FolderTreeNode[] array = new FolderTreeNode[slots.size()]; 
+		int i = 0; 
+		for(FolderTreeNode child: order) {
+			if(child != null) {
+				array[i++] = child; 
+			}
+		}
+		return array; 
+	}
+
+	@Override
+	public Iterator<FolderTreeNode> iterator() {
+		return new OrderIterator(order); 
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return false; 
+	}
+
+	/**
+	 * Iterator over the children in order, skipping empty slots
+	 */
+	private static class OrderIterator implements Iterator<FolderTreeNode> {
+		Iterator<FolderTreeNode> iter; 
+		FolderTreeNode next; 
+
+		/**
+		 * Create an iterator starting at the first child
+		 * @param order slots of children
+		 */
+		OrderIterator(ArrayList<FolderTreeNode> order) {
+			iter = order.iterator(); 
+			next = advance(); 
+		}
+
+		/**
+		 * Find the next child after empty slots
+		 * @return next child, null if there are no more
+		 */
+		private FolderTreeNode advance() {
+			while(iter.hasNext()) {
+				FolderTreeNode child = iter.next(); 
+				if(child != null) {
+					return child; 
+				}
+			}
+			return null; 
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null; 
+		}
+
+		@Override
+		public FolderTreeNode next() {
+			if(next == null) {
+				throw new NoSuchElementException(); 
+			}
+			FolderTreeNode child = next; 
+			next = advance(); 
+			return child; 
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package FileSystemPackage;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Striped read/write locks for the nodes of a tree.
+ * Each node maps to one of a fixed amount of locks by its identity hash,
+ * so nodes need no lock of their own and unrelated nodes rarely share one.
+ *
+ * The lock of a node guards its children and the files of its folder.
+ * Reading them takes the read lock, adding to them takes the write lock.
+ * A thread holds at most one node lock at a time, except when taking
+ * every lock in order to read the whole tree, so locks can not deadlock.
+ * @author fiona
+ *
+ */
+public class NodeLocks {
+	public static final int DEFAULT_STRIPES = 64;
+
+	ReentrantReadWriteLock[] stripes;
+	int mask;
+
+	/**
+	 * Create locks with a given amount of stripes,
+	 * rounded up to a power of two
+	 * @param stripes amount of locks shared by nodes
+	 */
+	public NodeLocks(int stripes) {
+		int size = 1;
+		while(size < stripes) {
+			size <<= 1;
+		}
+		this.stripes = new ReentrantReadWriteLock[size];
+		for(int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantReadWriteLock();
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * Create locks with the default amount of stripes
+	 */
+	public NodeLocks() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Get the lock of a node
+	 * @param node node to lock
+	 * @return read/write lock guarding node
+	 */
+	public ReadWriteLock of(Object node) {
+		int hash = System.identityHashCode(node);
+		hash ^= hash >>> 16;
+		return stripes[hash & mask];
+	}
+
+	/**
+	 * Take the read lock of every stripe, in order,
+	 * so nothing in the tree can change until readUnlockAll
+	 */
+	public void readLockAll() {
+		for(ReentrantReadWriteLock stripe: stripes) {
+			stripe.readLock().lock();
+		}
+	}
+
+	/**
+	 * Release the read lock of every stripe taken by readLockAll
+	 */
+	public void readUnlockAll() {
+		for(int i = stripes.length - 1; i >= 0; i--) {
+			stripes[i].readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get amount of stripes
+	 * @return locks shared by nodes
+	 */
+	public int size() {
+		return stripes.length;
+	}
+}
@@ -0,0 +1,143 @@
+package FileSystemPackage; 
+import java.util.*; 
+
+/**
+ * Least recently used cache from paths to the folder nodes they lead to.
+ * The cache empties itself when a folder in its tree is renamed, moved or removed.
+ * Paths are split between segments by hash, each its own LRU map with
+ * its own lock, so threads looking up different paths rarely wait on each other
+ * @author fiona
+ *
+ */
+public class PathCache {
+	public static final int DEFAULT_CAPACITY = 1024; 
+	public static final int SEGMENTS = 16; 
+	Segment[] segments; 
+	FolderTree tree; 
+
+	/**
+	 * Create a cache holding a given amount of paths of a tree
+	 * @param tree tree the paths are followed in
+	 * @param capacity most paths kept
+	 */
+	public PathCache(FolderTree tree, int capacity) {
+		this.tree = tree; 
+		segments = new Segment[SEGMENTS]; 
+		int segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS); 
+		for(int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(segmentCapacity, tree.getGeneration()); 
+		}
+	}
+
+	/**
+	 * Create a cache of a tree with the default capacity
+	 * @param tree tree the paths are followed in
+	 */
+	public PathCache(FolderTree tree) {
+		this(tree, DEFAULT_CAPACITY); 
+	}
+
+	/**
+	 * Get the segment a path is kept in
+	 * @param path path to look for
+	 * @return segment of path
+	 */
+	private Segment segmentOf(String path) {
+		int hash = path.hashCode(); 
+		hash ^= hash >>> 16; 
+		return segments[hash & (SEGMENTS - 1)]; 
+	}
+
+	/**
+	 * Get the node a path leads to
+	 * @param path path to look for
+	 * @return node of path, null if path is not cached
+	 */
+	public FolderTreeNode get(String path) {
+		Segment segment = segmentOf(path); 
+		synchronized(segment) {
+			segment.checkGeneration(tree.getGeneration()); 
+			return segment.get(path); 
+		}
+	}
+
+	/**
+	 * Remember the node a path leads to, unless the tree changed 
+	 * since the path was followed, as the node may no longer be there 
+	 * @param path path to remember
+	 * @param node node of path
+	 * @param generation tree generation read before following the path
+	 */
+	public void put(String path, FolderTreeNode node, long generation) {
+		Segment segment = segmentOf(path); 
+		synchronized(segment) {
+			segment.checkGeneration(tree.getGeneration()); 
+			if(segment.generation == generation) {
+				segment.put(path, node); 
+			}
+		}
+	}
+
+	/**
+	 * Return amount of paths cached
+	 * @return cached paths
+	 */
+	public int size() {
+		int size = 0; 
+		for(Segment segment: segments) {
+			synchronized(segment) {
+				segment.checkGeneration(tree.getGeneration()); 
+				size += segment.size(); 
+			}
+		}
+		return size; 
+	}
+
+	/**
+	 * Remove all cached paths
+	 */
+	public void clear() {
+		for(Segment segment: segments) {
+			synchronized(segment) {
+				segment.clear(); 
+			}
+		}
+	}
+
+	/**
+	 * One part of the cache, an access ordered map
+	 * dropping its least recently used path when full
+	 */
+	private static class Segment extends LinkedHashMap<String, FolderTreeNode> {
+		private static final long serialVersionUID = 1L; 
+		int capacity; 
+		long generation; 
+
+		/**
+		 * Create a segment holding a given amount of paths
+		 * @param capacity most paths kept
+		 * @param generation current generation of the tree
+		 */
+		Segment(int capacity, long generation) {
+			super(16, 0.75f, true); 
+			this.capacity = capacity; 
+			this.generation = generation; 
+		}
+
+		/**
+		 * Empty the segment if the tree changed since paths were added
+		 * @param current current generation of the tree
+		 */
+		void checkGeneration(long current) {
+			if(generation != current) {
+				clear(); 
+				generation = current; 
+			}
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FolderTreeNode> eldest) {
+			return size() > capacity; 
+		}
+	}
+}
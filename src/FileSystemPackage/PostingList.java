@@ -0,0 +1,211 @@
+package FileSystemPackage;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of file ids holding a term, kept compressed as bytes:
+ * each id is stored as its difference from the id before it, seven bits
+ * to a byte, so the ids of a term held by most files take about a byte each.
+ *
+ * An id larger than every stored id is added to the end in place.
+ * Other adds and removes wait in two small unsorted arrays
+ * and are merged into the bytes once there are more of them than
+ * a sixteenth of the ids, up to MAX_PENDING, so a change costs little
+ * on average even for a term held by a million files.
+ * @author fiona
+ *
+ */
+public class PostingList {
+	public static final int MIN_PENDING = 8;
+	public static final int MAX_PENDING = 4096;
+	private static final int[] NONE = new int[0];
+
+	byte[] data;
+	int length;
+	int count;
+	int last;
+	int[] added;
+	int addedCount;
+	int[] removed;
+	int removedCount;
+
+	/**
+	 * Create an empty list
+	 */
+	public PostingList() {
+		data = new byte[4];
+		length = 0;
+		count = 0;
+		last = -1;
+		added = NONE;
+		addedCount = 0;
+		removed = NONE;
+		removedCount = 0;
+	}
+
+	/**
+	 * Get amount of ids in the list
+	 * @return size of list
+	 */
+	public int size() {
+		return count + addedCount - removedCount;
+	}
+
+	/**
+	 * Get amount of bytes the stored ids take
+	 * @return compressed size
+	 */
+	public int bytes() {
+		return length;
+	}
+
+	/**
+	 * Add an id that is not in the list
+	 * @param id file id, at least 0
+	 */
+	public void add(int id) {
+		int index = indexOf(removed, removedCount, id);
+		if(index >= 0) {
+			removed[index] = removed[--removedCount];
+		}else if(id > last) {
+			append(id);
+		}else {
+			added = push(added, addedCount++, id);
+			compactIfFull();
+		}
+	}
+
+	/**
+	 * Remove an id that is in the list
+	 * @param id file id
+	 */
+	public void remove(int id) {
+		int index = indexOf(added, addedCount, id);
+		if(index >= 0) {
+			added[index] = added[--addedCount];
+		}else {
+			removed = push(removed, removedCount++, id);
+			compactIfFull();
+		}
+	}
+
+	/**
+	 * Get every id in the list
+	 * @return ids in increasing order
+	 */
+	public int[] toArray() {
+		int[] ids = new int[count];
+		int position = 0;
+		int id = -1;
+		for(int i = 0; i < count; i++) {
+			int gap = 0;
+			int shift = 0;
+			byte next;
+			do {
+				next = data[position++];
+				gap |= (next & 0x7f) << shift;
+				shift += 7;
+			}while(next < 0);
+			id += gap;
+			ids[i] = id;
+		}
+		if(addedCount == 0 && removedCount == 0) {
+			return ids;
+		}
+
+		int[] gone = Arrays.copyOf(removed, removedCount);
+		int[] extra = Arrays.copyOf(added, addedCount);
+		Arrays.sort(gone);
+		Arrays.sort(extra);
+		int[] merged = new int[size()];
+		int size = 0;
+		int g = 0;
+		int e = 0;
+		for(int i = 0; i < ids.length; i++) {
+			while(g < gone.length && gone[g] < ids[i]) {
+				g++;
+			}
+			if(g < gone.length && gone[g] == ids[i]) {
+				continue;
+			}
+			while(e < extra.length && extra[e] < ids[i]) {
+				merged[size++] = extra[e++];
+			}
+			merged[size++] = ids[i];
+		}
+		while(e < extra.length) {
+			merged[size++] = extra[e++];
+		}
+		return merged;
+	}
+
+	/**
+	 * Store an id larger than every stored id at the end of the bytes
+	 * @param id file id
+	 */
+	private void append(int id) {
+		if(length + 5 > data.length) {
+			data = Arrays.copyOf(data, Math.max(length + 5, data.length * 2));
+		}
+		int gap = id - last;
+		while(gap >= 0x80) {
+			data[length++] = (byte) (gap | 0x80);
+			gap >>>= 7;
+		}
+		data[length++] = (byte) gap;
+		last = id;
+		count++;
+	}
+
+	/**
+	 * Merge waiting adds and removes into the bytes
+	 * once there are too many to scan quickly
+	 */
+	private void compactIfFull() {
+		if(addedCount + removedCount > Math.max(MIN_PENDING, Math.min(MAX_PENDING, count >>> 4))) {
+			int[] ids = toArray();
+			length = 0;
+			count = 0;
+			last = -1;
+			addedCount = 0;
+			removedCount = 0;
+			for(int id: ids) {
+				append(id);
+			}
+			if(data.length > 2 * length + 8) {
+				data = Arrays.copyOf(data, length + 4);
+			}
+		}
+	}
+
+	/**
+	 * Find an id in an unsorted array
+	 * @param ids array to look in
+	 * @param size amount of ids used in array
+	 * @param id id to find
+	 * @return index of id, -1 if not found
+	 */
+	private static int indexOf(int[] ids, int size, int id) {
+		for(int i = 0; i < size; i++) {
+			if(ids[i] == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Put an id at an index of an array, growing the array if it is full
+	 * @param ids array to add to
+	 * @param index index to put id at
+	 * @param id id to add
+	 * @return array holding id
+	 */
+	private static int[] push(int[] ids, int index, int id) {
+		if(index == ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(4, ids.length * 2));
+		}
+		ids[index] = id;
+		return ids;
+	}
+}
@@ -0,0 +1,302 @@
+package FileSystemPackage;
+
+/**
+ * Immutable text stored as a balanced tree of string pieces.
+ * Appending, inserting and deleting build a new rope that shares
+ * most of its pieces with the old one, so they take O(log n)
+ * instead of copying the whole text.
+ * Every node also knows how many bytes its text takes as UTF-8,
+ * counted once when a piece is made, so the size of a whole rope is O(1).
+ * @author fiona
+ *
+ */
+public class Rope implements CharSequence {
+	public static final int PIECE_LENGTH = 512;
+	public static final Rope EMPTY = new Rope("");
+
+	final String piece;
+	final Rope left;
+	final Rope right;
+	final int length;
+	final long utf8Length;
+	final int height;
+
+	/**
+	 * Create a leaf rope holding a single piece of text
+	 * @param piece text of leaf
+	 */
+	private Rope(String piece) {
+		this.piece = piece;
+		left = null;
+		right = null;
+		length = piece.length();
+		utf8Length = utf8Length(piece);
+		height = 0;
+	}
+
+	/**
+	 * Create a rope made of two ropes joined together
+	 * @param left text at the beginning
+	 * @param right text at the end
+	 */
+	private Rope(Rope left, Rope right) {
+		piece = null;
+		this.left = left;
+		this.right = right;
+		length = left.length + right.length;
+		utf8Length = left.utf8Length + right.utf8Length;
+		height = Math.max(left.height, right.height) + 1;
+	}
+
+	/**
+	 * Create a rope holding a text
+	 * @param text text to store
+	 * @return rope of text
+	 */
+	public static Rope of(String text) {
+		if(text.isEmpty()) {
+			return EMPTY;
+		}
+		return build(text, 0, text.length());
+	}
+
+	/**
+	 * Build a balanced rope from part of a text
+	 * @param text text to store
+	 * @param start first index to store
+	 * @param end index after the last one to store
+	 * @return rope of the part of text
+	 */
+	private static Rope build(String text, int start, int end) {
+		if(end - start <= PIECE_LENGTH) {
+			return new Rope(text.substring(start, end));
+		}else {
+			int middle = (start + end) >>> 1;
+			return new Rope(build(text, start, middle), build(text, middle, end));
+		}
+	}
+
+	/**
+	 * Count the bytes a text takes as UTF-8.
+	 * Each half of a surrogate pair counts as 2 bytes, so a pair split
+	 * between two pieces adds up to the same 4 bytes as a pair in one piece
+	 * @param text text to count
+	 * @return UTF-8 bytes of text
+	 */
+	static long utf8Length(CharSequence text) {
+		long bytes = 0;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c < 0x80) {
+				bytes += 1;
+			}else if(c < 0x800 || Character.isSurrogate(c)) {
+				bytes += 2;
+			}else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Return true if the rope is a single piece of text
+	 * @return true if rope is a leaf
+	 */
+	private boolean isLeaf() {
+		return piece != null;
+	}
+
+	/**
+	 * Return amount of characters in rope
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Return amount of bytes the text takes as UTF-8
+	 * @return UTF-8 length of rope
+	 */
+	public long utf8Length() {
+		return utf8Length;
+	}
+
+	/**
+	 * Return the character at an index
+	 * @throws IndexOutOfBoundsException when index is not in the rope
+	 */
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of bounds!");
+		}
+		Rope rope = this;
+		while(!rope.isLeaf()) {
+			if(index < rope.left.length) {
+				rope = rope.left;
+			}else {
+				index -= rope.left.length;
+				rope = rope.right;
+			}
+		}
+		return rope.piece.charAt(index);
+	}
+
+	/**
+	 * Return the rope of characters between two indexes,
+	 * shares pieces with this rope instead of copying them
+	 */
+	@Override
+	public Rope subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is out of bounds!");
+		}
+		return split(end)[0].split(start)[1];
+	}
+
+	/**
+	 * Add text to the end of the rope
+	 * @param text text to add
+	 * @return rope with text at the end
+	 */
+	public Rope append(String text) {
+		return join(this, of(text));
+	}
+
+	/**
+	 * Add text at an index of the rope
+	 * @param index location to add text at
+	 * @param text text to add
+	 * @return rope with text added
+	 */
+	public Rope insert(int index, String text) {
+		return replace(index, index, text);
+	}
+
+	/**
+	 * Remove text between two indexes
+	 * @param start first index to remove
+	 * @param end index after the last one to remove
+	 * @return rope without the text between start and end
+	 */
+	public Rope delete(int start, int end) {
+		return replace(start, end, "");
+	}
+
+	/**
+	 * Replace text between two indexes with new text
+	 * @param start first index to replace
+	 * @param end index after the last one to replace
+	 * @param text text to put in place
+	 * @return rope with the text replaced
+	 */
+	public Rope replace(int start, int end, String text) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is out of bounds!");
+		}
+		Rope[] beginning = split(start);
+		Rope[] ending = beginning[1].split(end - start);
+		return join(join(beginning[0], of(text)), ending[1]);
+	}
+
+	/**
+	 * Split the rope into the text before an index and the text after it
+	 * @param index location to split at
+	 * @return array of the rope before index and the rope after it
+	 */
+	Rope[] split(int index) {
+		if(index <= 0) {
+			return new Rope[] {EMPTY, this};
+		}else if(index >= length) {
+			return new Rope[] {this, EMPTY};
+		}else if(isLeaf()) {
+			return new Rope[] {new Rope(piece.substring(0, index)), new Rope(piece.substring(index))};
+		}else if(index < left.length) {
+			Rope[] parts = left.split(index);
+			return new Rope[] {parts[0], join(parts[1], right)};
+		}else if(index == left.length) {
+			return new Rope[] {left, right};
+		}else {
+			Rope[] parts = right.split(index - left.length);
+			return new Rope[] {join(left, parts[0]), parts[1]};
+		}
+	}
+
+	/**
+	 * Join two ropes into one, keeping the tree balanced.
+	 * Small pieces next to each other are merged into one piece.
+	 * @param first text at the beginning
+	 * @param second text at the end
+	 * @return rope of first followed by second
+	 */
+	static Rope join(Rope first, Rope second) {
+		if(first.length == 0) {
+			return second;
+		}else if(second.length == 0) {
+			return first;
+		}else if(first.isLeaf() && second.isLeaf() && first.length + second.length <= PIECE_LENGTH) {
+			return new Rope(first.piece + second.piece);
+		}else if(first.height > second.height + 1) {
+			return balance(first.left, join(first.right, second));
+		}else if(second.height > first.height + 1) {
+			return balance(join(first, second.left), second.right);
+		}else if(!first.isLeaf() && first.right.isLeaf() && second.isLeaf()
+				&& first.right.length + second.length <= PIECE_LENGTH) {
+			return balance(first.left, new Rope(first.right.piece + second.piece));
+		}else {
+			return new Rope(first, second);
+		}
+	}
+
+	/**
+	 * Join two ropes whose heights differ by at most two,
+	 * rotating the tree if one side is too tall
+	 * @param first text at the beginning
+	 * @param second text at the end
+	 * @return balanced rope of first followed by second
+	 */
+	private static Rope balance(Rope first, Rope second) {
+		if(first.height > second.height + 1) {
+			if(first.left.height >= first.right.height) {
+				return new Rope(first.left, new Rope(first.right, second));
+			}else {
+				return new Rope(new Rope(first.left, first.right.left), new Rope(first.right.right, second));
+			}
+		}else if(second.height > first.height + 1) {
+			if(second.right.height >= second.left.height) {
+				return new Rope(new Rope(first, second.left), second.right);
+			}else {
+				return new Rope(new Rope(first, second.left.left), new Rope(second.left.right, second.right));
+			}
+		}else {
+			return new Rope(first, second);
+		}
+	}
+
+	/**
+	 * Add all pieces of the rope to a builder
+	 * @param builder builder to add text to
+	 */
+	private void appendTo(StringBuilder builder) {
+		if(isLeaf()) {
+			builder.append(piece);
+		}else {
+			left.appendTo(builder);
+			right.appendTo(builder);
+		}
+	}
+
+	/**
+	 * Return the text of the rope as a single string
+	 */
+	@Override
+	public String toString() {
+		if(isLeaf()) {
+			return piece;
+		}
+		StringBuilder builder = new StringBuilder(length);
+		appendTo(builder);
+		return builder.toString();
+	}
+}
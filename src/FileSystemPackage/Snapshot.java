@@ -0,0 +1,484 @@
+package FileSystemPackage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+/**
+ * Saves a whole folder tree, with every folder, file name and file text,
+ * to a compact binary file and loads it back.
+ *
+ * Numbers are written as variable length integers and text as its UTF-8
+ * length followed by its bytes. Folder and file names are written once in
+ * a string table and referred to by index. Each child of the root is written
+ * as its own section so sections can be decoded in parallel on load.
+ *
+ * Layout: magic, root section, one section per root child, string table,
+ * footer of section offsets and journal sequence number,
+ * and the footer offset as the last 8 bytes.
+ * A section is its folders in pre-order, each written as name index,
+ * file count, files (name index and text), and child count.
+ *
+ * File text is not read on load, each file keeps where its text is in the
+ * memory mapped section and reads it the first time it is used. Saving
+ * writes to a new file and moves it over the old one, so a snapshot
+ * still mapped by loaded files is never overwritten.
+ * @author fiona
+ *
+ */
+public class Snapshot {
+	public static final int MAGIC = 0x46535331;
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	int folders;
+	int files;
+	long sequence;
+
+	/**
+	 * Get amount of folders saved or loaded
+	 * @return folders
+	 */
+	public int getFolders() {
+		return folders;
+	}
+
+	/**
+	 * Get amount of files saved or loaded
+	 * @return files
+	 */
+	public int getFiles() {
+		return files;
+	}
+
+	/**
+	 * Get the last journal sequence number included in the snapshot
+	 * @return journal sequence number, 0 if saved without a journal
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Save a tree to a file, replacing the file if it exists
+	 * @param tree tree to save
+	 * @param path file to save to
+	 * @return snapshot with the amount of folders and files saved
+	 * @throws IOException if the file can not be written
+	 */
+	public static Snapshot save(FolderTree tree, Path path) throws IOException {
+		return save(tree, path, 0);
+	}
+
+	/**
+	 * Save a tree to a file, replacing the file if it exists,
+	 * recording the last journal sequence number the tree includes.
+	 * The tree is written to a file beside path and moved to path once complete,
+	 * other threads can not change the tree while it is written
+	 * @param tree tree to save
+	 * @param path file to save to
+	 * @param sequence last journal sequence number in the tree
+	 * @return snapshot with the amount of folders and files saved
+	 * @throws IOException if the file can not be written
+	 */
+	public static Snapshot save(FolderTree tree, Path path, long sequence) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		Snapshot snapshot;
+		tree.readLockAll();
+		try {
+			snapshot = write(tree, temp, sequence);
+		}finally {
+			tree.readUnlockAll();
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return snapshot;
+	}
+
+	/**
+	 * Write a tree to a new file
+	 * @param tree tree to save
+	 * @param path file to write
+	 * @param sequence last journal sequence number in the tree
+	 * @return snapshot with the amount of folders and files saved
+	 * @throws IOException if the file can not be written
+	 */
+	private static Snapshot write(FolderTree tree, Path path, long sequence) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Snapshot snapshot = new Snapshot();
+			snapshot.sequence = sequence;
+			Writer writer = new Writer(channel);
+			FolderTreeNode root = tree.getRoot();
+			writer.writeInt(MAGIC);
+
+			long rootOffset = writer.position();
+			snapshot.writeFolder(writer, root);
+			FolderTreeNode[] children = root.getChildren();
+			long[] sectionOffsets = new long[children.length + 1];
+			for(int i = 0; i < children.length; i++) {
+				sectionOffsets[i] = writer.position();
+				snapshot.writeSection(writer, children[i]);
+			}
+			sectionOffsets[children.length] = writer.position();
+
+			ArrayList<String> strings = writer.strings;
+			long stringsOffset = writer.position();
+			writer.writeVarint(strings.size());
+			for(String string: strings) {
+				writer.writeBytes(string.getBytes(StandardCharsets.UTF_8));
+			}
+
+			long footerOffset = writer.position();
+			writer.writeLong(rootOffset);
+			writer.writeLong(stringsOffset);
+			writer.writeInt(children.length);
+			for(long offset: sectionOffsets) {
+				writer.writeLong(offset);
+			}
+			writer.writeLong(sequence);
+			writer.writeLong(footerOffset);
+			writer.flush();
+			return snapshot;
+		}catch (SnapshotException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Write a folder and every folder below it in pre-order
+	 * @param writer writer to write to
+	 * @param top top folder of section
+	 */
+	private void writeSection(Writer writer, FolderTreeNode top) {
+		TreeTraversal.preOrder(top, FolderTreeNode::getIterable, node -> {
+			try {
+				writeFolder(writer, node);
+				return false;
+			}catch (IOException e) {
+				throw new SnapshotException(e);
+			}
+		});
+	}
+
+	/**
+	 * Write the name, files and child count of a folder
+	 * @param writer writer to write to
+	 * @param node node of folder
+	 * @throws IOException if the file can not be written
+	 */
+	private void writeFolder(Writer writer, FolderTreeNode node) throws IOException {
+		Folder folder = node.getValue();
+		writer.writeString(folder.getName());
+		writer.writeVarint(folder.numberOfFiles());
+		Iterator<File> fileIter = folder.getFileIterator();
+		while(fileIter.hasNext()) {
+			File file = fileIter.next();
+			writer.writeString(file.getFileName());
+			writer.writeBytes(file.getTextBytes());
+			files ++;
+		}
+		writer.writeVarint(node.numberOfChildren());
+		folders ++;
+	}
+
+	/**
+	 * Load a tree from a file saved with save
+	 * @param path file to load
+	 * @return tree in the file
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static FolderTree load(Path path) throws IOException {
+		return load(path, new Snapshot());
+	}
+
+	/**
+	 * Load a tree from a file saved with save,
+	 * counting the folders and files loaded in a snapshot
+	 * @param path file to load
+	 * @param snapshot snapshot to count folders and files in
+	 * @return tree in the file
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static FolderTree load(Path path, Snapshot snapshot) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size < 12 || map(channel, 0, 4).getInt() != MAGIC) {
+				throw new IOException(path + " is not a snapshot");
+			}
+			long footerOffset = map(channel, size - 8, 8).getLong();
+			ByteBuffer footer = map(channel, footerOffset, size - 8 - footerOffset);
+			long rootOffset = footer.getLong();
+			long stringsOffset = footer.getLong();
+			int sectionCount = footer.getInt();
+			long[] sectionOffsets = new long[sectionCount + 1];
+			for(int i = 0; i <= sectionCount; i++) {
+				sectionOffsets[i] = footer.getLong();
+			}
+			snapshot.sequence = footer.getLong();
+
+			ByteBuffer stringBuffer = map(channel, stringsOffset, footerOffset - stringsOffset);
+			String[] strings = new String[readVarint(stringBuffer)];
+			for(int i = 0; i < strings.length; i++) {
+				strings[i] = readString(stringBuffer);
+			}
+
+			int[] counts = new int[2];
+			long sectionStart = sectionCount > 0 ? sectionOffsets[0] : stringsOffset;
+			FolderTreeNode root = readFolders(map(channel, rootOffset, sectionStart - rootOffset), strings, counts, true);
+
+			FolderTreeNode[] sections = new FolderTreeNode[sectionCount];
+			int[][] sectionCounts = new int[sectionCount][2];
+			ByteBuffer[] sectionBuffers = new ByteBuffer[sectionCount];
+			for(int i = 0; i < sectionCount; i++) {
+				sectionBuffers[i] = map(channel, sectionOffsets[i], sectionOffsets[i + 1] - sectionOffsets[i]);
+			}
+			IntStream.range(0, sectionCount).parallel().forEach(i ->
+				sections[i] = readFolders(sectionBuffers[i], strings, sectionCounts[i], false));
+
+			snapshot.folders = counts[0];
+			snapshot.files = counts[1];
+			for(int i = 0; i < sectionCount; i++) {
+				root.addChild(sections[i]);
+				snapshot.folders += sectionCounts[i][0];
+				snapshot.files += sectionCounts[i][1];
+			}
+			return new FolderTree(root);
+		}catch (RuntimeException e) {
+			throw new IOException(path + " is not a valid snapshot", e);
+		}
+	}
+
+	/**
+	 * Map part of a file into memory
+	 * @param channel file to map
+	 * @param offset start of part
+	 * @param length length of part
+	 * @return buffer of the part
+	 * @throws IOException if the part can not be mapped
+	 */
+	private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+		if(offset < 0 || length < 0 || offset + length > channel.size()) {
+			throw new IOException("Section at " + offset + " is out of bounds");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+
+	/**
+	 * Read folders written in pre-order back into nodes
+	 * @param buffer buffer holding the folders
+	 * @param strings string table
+	 * @param counts array counting folders and files read
+	 * @param onlyTop true to read only the top folder, leaving its children
+	 * @return top folder node
+	 */
+	private static FolderTreeNode readFolders(ByteBuffer buffer, String[] strings, int[] counts, boolean onlyTop) {
+		ArrayStack<FolderTreeNode> parents = new ArrayStack<FolderTreeNode>();
+		ArrayStack<int[]> remaining = new ArrayStack<int[]>();
+		FolderTreeNode top = null;
+		do {
+			Folder folder = new Folder(strings[readVarint(buffer)]);
+			int fileCount = readVarint(buffer);
+			for(int i = 0; i < fileCount; i++) {
+				String name = strings[readVarint(buffer)];
+				int length = readVarint(buffer);
+				folder.addFile(File.stored(name, buffer, buffer.position(), length));
+				buffer.position(buffer.position() + length);
+			}
+			counts[0] ++;
+			counts[1] += fileCount;
+			int childCount = readVarint(buffer);
+
+			FolderTreeNode node;
+			if(parents.isEmpty()) {
+				node = new FolderTreeNode(folder);
+				top = node;
+				if(onlyTop) {
+					return top;
+				}
+			}else {
+				node = parents.peek().addChild(folder);
+				remaining.peek()[0] --;
+			}
+			if(childCount > 0) {
+				parents.push(node);
+				remaining.push(new int[] {childCount});
+			}
+			while(!remaining.isEmpty() && remaining.peek()[0] == 0) {
+				parents.pop();
+				remaining.pop();
+			}
+		}while(!parents.isEmpty());
+		return top;
+	}
+
+	/**
+	 * Read a variable length integer
+	 * @param buffer buffer to read from
+	 * @return integer read
+	 */
+	static int readVarint(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}while(b < 0);
+		return value;
+	}
+
+	/**
+	 * Read a length prefixed UTF-8 string
+	 * @param buffer buffer to read from
+	 * @return string read
+	 */
+	static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[readVarint(buffer)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Unchecked wrapper for an IOException thrown inside a tree walk
+	 */
+	private static class SnapshotException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Wrap an IOException
+		 * @param cause exception to wrap
+		 */
+		SnapshotException(IOException cause) {
+			super(cause);
+		}
+
+		/**
+		 * Get the wrapped exception
+		 */
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+
+	/**
+	 * Buffered writer of snapshot values to a file channel,
+	 * collecting the string table as names are written
+	 */
+	private static class Writer {
+		FileChannel channel;
+		ByteBuffer buffer;
+		HashMap<String, Integer> stringIndex;
+		ArrayList<String> strings;
+
+		/**
+		 * Create a writer to a channel
+		 * @param channel file to write to
+		 */
+		Writer(FileChannel channel) {
+			this.channel = channel;
+			buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			stringIndex = new HashMap<String, Integer>();
+			strings = new ArrayList<String>();
+		}
+
+		/**
+		 * Get the location in the file the next value is written at
+		 * @return file position
+		 * @throws IOException if the file position can not be read
+		 */
+		long position() throws IOException {
+			return channel.position() + buffer.position();
+		}
+
+		/**
+		 * Make sure the buffer has room for a given amount of bytes
+		 * @param bytes bytes needed
+		 * @throws IOException if the file can not be written
+		 */
+		void ensure(int bytes) throws IOException {
+			if(buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		/**
+		 * Write the buffer to the file
+		 * @throws IOException if the file can not be written
+		 */
+		void flush() throws IOException {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		void writeInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		void writeLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+		}
+
+		/**
+		 * Write an integer 7 bits at a time, smallest bits first
+		 * @param value non negative integer to write
+		 * @throws IOException if the file can not be written
+		 */
+		void writeVarint(int value) throws IOException {
+			ensure(5);
+			while((value & ~0x7F) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		/**
+		 * Write a length followed by bytes
+		 * @param bytes bytes to write
+		 * @throws IOException if the file can not be written
+		 */
+		void writeBytes(byte[] bytes) throws IOException {
+			writeVarint(bytes.length);
+			int written = 0;
+			while(written < bytes.length) {
+				if(!buffer.hasRemaining()) {
+					flush();
+				}
+				int length = Math.min(buffer.remaining(), bytes.length - written);
+				buffer.put(bytes, written, length);
+				written += length;
+			}
+		}
+
+		/**
+		 * Write the index of a string in the string table,
+		 * adding it to the table the first time it is written
+		 * @param string string to write
+		 * @throws IOException if the file can not be written
+		 */
+		void writeString(String string) throws IOException {
+			Integer index = stringIndex.get(string);
+			if(index == null) {
+				index = strings.size();
+				stringIndex.put(string, index);
+				strings.add(string);
+			}
+			writeVarint(index);
+		}
+	}
+}
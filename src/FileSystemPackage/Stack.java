@@ -9,12 +9,14 @@ import java.util.*;
  */
 public class Stack<T> implements StackInterface<T> {
 	Node firstNode; 
+	int size; 
 	
 	/**
 	 * Create an empty stack 
 	 */
 	public Stack() {
 		firstNode = null; 
+		size = 0; 
 	}
 	
 	/** Adds a new entry to the top of this stack.
@@ -28,6 +30,7 @@ public class Stack<T> implements StackInterface<T> {
 			newNode.setNext(firstNode);
 			firstNode = newNode; 
 		}
+		size ++; 
 		
 	}
 	
@@ -42,6 +45,7 @@ public class Stack<T> implements StackInterface<T> {
 		}else {
 			T data = firstNode.getData(); 
 			firstNode = firstNode.getNext(); 
+			size --; 
 			return data; 
 		}
 	}
@@ -66,10 +70,18 @@ public class Stack<T> implements StackInterface<T> {
 		return firstNode == null;
 	}
 	
+	/** Gets the number of entries in this stack.
+    @return  The number of entries. */
+	@Override
+	public int size() {
+		return size;
+	}
+	
 	/** Removes all entries from this stack. */
 	@Override
 	public void clear() {
 		firstNode = null; 
+		size = 0; 
 		
 	}
 	
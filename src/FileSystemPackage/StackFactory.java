@@ -0,0 +1,48 @@
+package FileSystemPackage;
+
+/**
+ * Creates a stack of either implementation, so benchmarks can compare them. 
+ * The command history is a CommandHistory ring and file edits are kept 
+ * in an ArrayStack, as EditHistory needs removeBottom, so neither uses this 
+ * @author fiona
+ *
+ */
+public class StackFactory {
+	/**
+	 * Stack implementations that can be created
+	 */
+	public enum Kind {
+		LINKED, ARRAY
+	}
+	
+	private static Kind kind = Kind.ARRAY; 
+	
+	/**
+	 * Get the kind of stack created
+	 * @return stack implementation
+	 */
+	public static Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Set the kind of stack created
+	 * @param newKind stack implementation
+	 */
+	public static void setKind(Kind newKind) {
+		kind = newKind;
+	}
+	
+	/**
+	 * Create an empty stack with no capacity limit
+	 * @param <T> generic object of stack
+	 * @return new stack
+	 */
+	public static <T> StackInterface<T> newStack() {
+		if(kind == Kind.LINKED) {
+			return new Stack<T>(); 
+		}else {
+			return new ArrayStack<T>(); 
+		}
+	}
+}
@@ -26,6 +26,10 @@ package FileSystemPackage;
          @return  True if the stack is empty. */
      public boolean isEmpty();
 
+     /** Gets the number of entries in this stack.
+         @return  The number of entries. */
+     public int size();
+
      /** Removes all entries from this stack. */
      public void clear();
   } // end StackInterface
@@ -0,0 +1,617 @@
+package FileSystemPackage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TCP server running a command line session for every connection,
+ * all sessions sharing one folder tree.
+ *
+ * Sessions do not get a thread each. One selector thread accepts
+ * connections and reads from all of them, splitting input into lines.
+ * When a session has lines waiting, it is handed to a small pool of
+ * worker threads, which run its lines in order with handleInput.
+ * Output is written without blocking, and whatever the socket does not
+ * take is written by the selector thread once the socket is ready.
+ * An idle session costs its socket, its command line and a few buffers,
+ * so many thousands of mostly idle terminals fit in one JVM.
+ *
+ * Connections over the limit are told so and closed, and connections
+ * with no input for the idle timeout are closed. A connection whose
+ * client does not read its output stops running lines and reading input
+ * once MAX_QUEUED_OUTPUT bytes are queued, and goes on when they are written.
+ * @author fiona
+ *
+ */
+public class TerminalServer implements Closeable {
+	public static final int DEFAULT_PORT = 4040;
+	public static final int DEFAULT_MAX_CONNECTIONS = 10000;
+	public static final long DEFAULT_IDLE_MILLIS = 10 * 60 * 1000;
+	public static final int MAX_LINE = 64 * 1024;
+	public static final int MAX_PENDING_LINES = 256;
+	public static final int MAX_QUEUED_OUTPUT = 1024 * 1024;
+	public static final int READ_BUFFER = 64 * 1024;
+	public static final long SWEEP_MILLIS = 1000;
+
+	FolderTree folders;
+	CommandLine storeOwner;
+	int maxConnections;
+	long idleMillis;
+	ServerSocketChannel server;
+	Selector selector;
+	ExecutorService workers;
+	HashSet<Connection> connections;
+	ConcurrentLinkedQueue<Connection> interestChanges;
+	volatile boolean open;
+	volatile Thread runner;
+
+	/**
+	 * Create a server for a shared folder tree
+	 * @param folders folder tree every session works on
+	 * @param storeOwner command line whose store sessions journal to, null for none
+	 * @param maxConnections most connections open at once
+	 * @param idleMillis milliseconds without input before a connection is closed
+	 * @param workerThreads threads running session commands
+	 */
+	public TerminalServer(FolderTree folders, CommandLine storeOwner, int maxConnections, long idleMillis, int workerThreads) {
+		this.folders = folders;
+		this.storeOwner = storeOwner;
+		this.maxConnections = maxConnections;
+		this.idleMillis = idleMillis;
+		workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+			Thread thread = new Thread(runnable, "terminal-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		connections = new HashSet<Connection>();
+		interestChanges = new ConcurrentLinkedQueue<Connection>();
+	}
+
+	/**
+	 * Start listening on an address
+	 * @param address address to listen on, port 0 for any free port
+	 * @throws IOException if the address can not be bound
+	 */
+	public void bind(InetSocketAddress address) throws IOException {
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(address, 1024);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		open = true;
+	}
+
+	/**
+	 * Get the address the server listens on
+	 * @return bound address
+	 * @throws IOException if the address can not be read
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+
+	/**
+	 * Get amount of open connections
+	 * @return open connections
+	 */
+	public int connectionCount() {
+		synchronized(connections) {
+			return connections.size();
+		}
+	}
+
+	/**
+	 * Accept, read and write connections until closed,
+	 * then close the selector
+	 * @throws IOException if the selector fails
+	 */
+	public void run() throws IOException {
+		runner = Thread.currentThread();
+		try {
+			select();
+		}finally {
+			selector.close();
+		}
+	}
+
+	/**
+	 * Wait for connections to be ready and handle them until closed
+	 * @throws IOException if the selector fails
+	 */
+	private void select() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+		long lastSweep = System.currentTimeMillis();
+		while(open) {
+			selector.select(SWEEP_MILLIS);
+			Connection changed;
+			while((changed = interestChanges.poll()) != null) {
+				changed.updateInterest();
+			}
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while(open && keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				if(!key.isValid()) {
+					continue;
+				}
+				if(key.isAcceptable()) {
+					accept();
+				}else {
+					Connection connection = (Connection) key.attachment();
+					if(key.isWritable()) {
+						connection.writePending();
+					}
+					if(key.isValid() && key.isReadable()) {
+						connection.read(buffer);
+					}
+				}
+			}
+			long now = System.currentTimeMillis();
+			if(now - lastSweep >= SWEEP_MILLIS) {
+				closeIdle(now);
+				lastSweep = now;
+			}
+		}
+	}
+
+	/**
+	 * Accept every waiting connection, refusing those over the limit
+	 * @throws IOException if accepting fails
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			if(connectionCount() >= maxConnections) {
+				channel.write(ByteBuffer.wrap("Too many connections, try again later\n".getBytes(StandardCharsets.UTF_8)));
+				channel.close();
+				continue;
+			}
+			Connection connection = new Connection(channel);
+			synchronized(connections) {
+				connections.add(connection);
+			}
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			connection.begin();
+		}
+	}
+
+	/**
+	 * Close connections that have had no input for the idle timeout
+	 * and are not running a command
+	 * @param now current time in milliseconds
+	 */
+	private void closeIdle(long now) {
+		Connection[] open;
+		synchronized(connections) {
+			open = connections.toArray(new Connection[connections.size()]);
+		}
+		for(Connection connection: open) {
+			if(now - connection.lastInput > idleMillis && !connection.isScheduled()) {
+				connection.send("\nIdle timeout, closing connection\n");
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Ask the selector thread to update what a connection waits for
+	 * @param connection connection to update
+	 */
+	void requestInterest(Connection connection) {
+		interestChanges.add(connection);
+		selector.wakeup();
+	}
+
+	/**
+	 * Stop accepting and close every connection. The selector is closed
+	 * by the thread running the server once it wakes up, as closing it
+	 * from here could happen while that thread is going through its keys
+	 */
+	@Override
+	public void close() throws IOException {
+		open = false;
+		workers.shutdown();
+		Connection[] open;
+		synchronized(connections) {
+			open = connections.toArray(new Connection[connections.size()]);
+		}
+		for(Connection connection: open) {
+			connection.close();
+		}
+		if(selector != null) {
+			selector.wakeup();
+			if(runner == null) {
+				selector.close();
+			}
+		}
+		if(server != null) {
+			server.close();
+		}
+	}
+
+	/**
+	 * One connected terminal: its socket, its session,
+	 * lines waiting to run and output waiting to be written
+	 */
+	class Connection {
+		SocketChannel channel;
+		SelectionKey key;
+		CommandLine session;
+		byte[] partial;
+		int partialLength;
+		ArrayDeque<String> lines;
+		ArrayDeque<ByteBuffer> output;
+		long queuedBytes;
+		boolean scheduled;
+		boolean closing;
+		volatile long lastInput;
+
+		/**
+		 * Create a connection and its session
+		 * @param channel socket of connection
+		 */
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+			lines = new ArrayDeque<String>(4);
+			output = new ArrayDeque<ByteBuffer>(4);
+			partialLength = 0;
+			lastInput = System.currentTimeMillis();
+			session = new CommandLine(folders, new SessionWriter(this));
+			if(storeOwner != null) {
+				session.shareStore(storeOwner);
+			}
+		}
+
+		/**
+		 * Start the session on a worker thread, as showing the first prompt
+		 * can wait for the journal to be forced to disk. The connection
+		 * counts as scheduled until then, so lines read meanwhile are queued
+		 * and run after the prompt
+		 */
+		void begin() {
+			synchronized(this) {
+				scheduled = true;
+			}
+			workers.execute(() -> {
+				try {
+					session.start();
+				}catch (RuntimeException e) {
+					send("ERROR " + e + "\n");
+				}
+				runLines();
+			});
+		}
+
+		/**
+		 * Read what the socket has, queue every complete line
+		 * and schedule the session if it is not already running
+		 * @param buffer buffer to read into
+		 */
+		void read(ByteBuffer buffer) {
+			buffer.clear();
+			int read;
+			try {
+				read = channel.read(buffer);
+			}catch (IOException e) {
+				read = -1;
+			}
+			if(read < 0) {
+				close();
+				return;
+			}
+			lastInput = System.currentTimeMillis();
+			byte[] bytes = buffer.array();
+			int lineStart = 0;
+			boolean schedule = false;
+			for(int i = 0; i < read; i++) {
+				if(bytes[i] == '\n') {
+					int end = i;
+					if(partialLength == 0 && end > lineStart && bytes[end - 1] == '\r') {
+						end --;
+					}
+					String line = takeLine(bytes, lineStart, end);
+					lineStart = i + 1;
+					synchronized(this) {
+						lines.add(line);
+						if(!scheduled) {
+							scheduled = true;
+							schedule = true;
+						}
+					}
+				}
+			}
+			if(!keepPartial(bytes, lineStart, read)) {
+				send("\nLine too long, closing connection\n");
+				close();
+				return;
+			}
+			synchronized(this) {
+				if(lines.size() >= MAX_PENDING_LINES) {
+					//stop reading until the session catches up
+					key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+				}
+			}
+			if(schedule) {
+				workers.execute(this::runLines);
+			}
+		}
+
+		/**
+		 * Build a line from the bytes kept from earlier reads and new bytes
+		 * @param bytes bytes read
+		 * @param start start of the rest of the line in bytes
+		 * @param end end of the line in bytes
+		 * @return line without its line break
+		 */
+		private String takeLine(byte[] bytes, int start, int end) {
+			if(partialLength == 0) {
+				return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+			}
+			keepPartial(bytes, start, end);
+			int length = partialLength;
+			if(length > 0 && partial[length - 1] == '\r') {
+				length --;
+			}
+			String line = new String(partial, 0, length, StandardCharsets.UTF_8);
+			partialLength = 0;
+			partial = null;
+			return line;
+		}
+
+		/**
+		 * Keep bytes of a line that has not ended yet
+		 * @param bytes bytes read
+		 * @param start start of bytes to keep
+		 * @param end end of bytes to keep
+		 * @return false if the line is longer than MAX_LINE
+		 */
+		private boolean keepPartial(byte[] bytes, int start, int end) {
+			int length = end - start;
+			if(length == 0) {
+				return true;
+			}
+			if(partialLength + length > MAX_LINE) {
+				return false;
+			}
+			if(partial == null) {
+				partial = new byte[Math.max(256, length)];
+			}else if(partial.length < partialLength + length) {
+				partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + length));
+			}
+			System.arraycopy(bytes, start, partial, partialLength, length);
+			partialLength += length;
+			return true;
+		}
+
+		/**
+		 * Run queued lines in order on a worker thread, until there are
+		 * none left, the session exits or too much output is queued.
+		 * Lines left for queued output are run again by writePending
+		 */
+		void runLines() {
+			while(true) {
+				String line;
+				boolean resume;
+				synchronized(this) {
+					line = queuedBytes < MAX_QUEUED_OUTPUT ? lines.poll() : null;
+					if(line == null || closing) {
+						scheduled = false;
+						return;
+					}
+					resume = lines.size() == MAX_PENDING_LINES - 1;
+				}
+				if(resume) {
+					requestInterest(this);
+				}
+				boolean active;
+				try {
+					active = session.handleInput(line);
+				}catch (RuntimeException e) {
+					send("ERROR " + e + "\n");
+					active = true;
+				}
+				if(!active) {
+					synchronized(this) {
+						closing = true;
+						scheduled = false;
+					}
+					closeWhenWritten();
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Return true while lines are queued or running on a worker
+		 * @return if session is scheduled
+		 */
+		synchronized boolean isScheduled() {
+			return scheduled;
+		}
+
+		/**
+		 * Write text to the socket, queueing what the socket does not take
+		 * @param text text to write
+		 */
+		void send(String text) {
+			ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+			boolean wait;
+			synchronized(this) {
+				if(output.isEmpty()) {
+					try {
+						channel.write(bytes);
+					}catch (IOException e) {
+						closing = true;
+						return;
+					}
+				}
+				if(!bytes.hasRemaining()) {
+					return;
+				}
+				//the selector stops reading once the queue passes the limit
+				wait = output.isEmpty() || queuedBytes < MAX_QUEUED_OUTPUT && queuedBytes + bytes.remaining() >= MAX_QUEUED_OUTPUT;
+				output.add(bytes);
+				queuedBytes += bytes.remaining();
+			}
+			if(wait) {
+				requestInterest(this);
+			}
+		}
+
+		/**
+		 * Write queued output the socket is ready for, called by the selector thread.
+		 * Runs the lines left waiting once the queued output is under the limit again
+		 */
+		void writePending() {
+			boolean done;
+			boolean schedule = false;
+			synchronized(this) {
+				try {
+					while(!output.isEmpty()) {
+						ByteBuffer bytes = output.peek();
+						queuedBytes -= channel.write(bytes);
+						if(bytes.hasRemaining()) {
+							break;
+						}
+						output.poll();
+					}
+				}catch (IOException e) {
+					output.clear();
+					queuedBytes = 0;
+					closing = true;
+				}
+				done = output.isEmpty() && closing;
+				if(!done && !closing && !scheduled && !lines.isEmpty() && queuedBytes < MAX_QUEUED_OUTPUT) {
+					scheduled = true;
+					schedule = true;
+				}
+			}
+			if(done) {
+				close();
+			}else {
+				updateInterest();
+				if(schedule) {
+					workers.execute(this::runLines);
+				}
+			}
+		}
+
+		/**
+		 * Close the connection once its queued output is written
+		 */
+		void closeWhenWritten() {
+			boolean done;
+			synchronized(this) {
+				done = output.isEmpty();
+			}
+			if(done) {
+				close();
+			}else {
+				requestInterest(this);
+			}
+		}
+
+		/**
+		 * Wait for the socket to be writable while output is queued,
+		 * and readable while the session keeps up with its input
+		 * and the client keeps up with its output.
+		 * Called by the selector thread
+		 */
+		void updateInterest() {
+			if(key == null || !key.isValid()) {
+				return;
+			}
+			int ops = 0;
+			synchronized(this) {
+				if(!output.isEmpty()) {
+					ops |= SelectionKey.OP_WRITE;
+				}
+				if(!closing && lines.size() < MAX_PENDING_LINES && queuedBytes < MAX_QUEUED_OUTPUT) {
+					ops |= SelectionKey.OP_READ;
+				}
+			}
+			key.interestOps(ops);
+		}
+
+		/**
+		 * Close the socket and forget the connection
+		 */
+		void close() {
+			synchronized(this) {
+				closing = true;
+				lines.clear();
+			}
+			synchronized(connections) {
+				connections.remove(this);
+			}
+			try {
+				if(key != null) {
+					key.cancel();
+				}
+				channel.close();
+			}catch (IOException e) {
+				//already closed
+			}
+		}
+	}
+
+	/**
+	 * Writer collecting a session's output and sending it
+	 * to its connection when the session flushes
+	 */
+	private static class SessionWriter extends Writer {
+		Connection connection;
+		StringBuilder text;
+
+		/**
+		 * Create a writer for a connection
+		 * @param connection connection to send to
+		 */
+		SessionWriter(Connection connection) {
+			this.connection = connection;
+			text = new StringBuilder();
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			text.append(chars, offset, length);
+		}
+
+		@Override
+		public void write(String string, int offset, int length) {
+			text.append(string, offset, offset + length);
+		}
+
+		@Override
+		public void flush() {
+			if(text.length() > 0) {
+				connection.send(text.toString());
+				text.setLength(0);
+				if(text.capacity() > 4096) {
+					text.trimToSize();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package FileSystemPackage;
+
+/**
+ * A change to the text of a file, 
+ * stored as the range of text it replaces instead of a full copy.
+ * Applying an edit replaces the inserted range with the removed text 
+ * and gives back the edit that reverses it, 
+ * so the same class is used for both undo and redo history. 
+ * @author fiona
+ *
+ */
+public class TextEdit {
+	public static final int OBJECT_BYTES = 64; 
+	int start; 
+	String removed; 
+	int insertedLength; 
+	
+	/**
+	 * Create an edit
+	 * @param start index in text the edit begins at
+	 * @param removed text the edit puts back when applied 
+	 * @param insertedLength length of text the edit takes out when applied
+	 */
+	public TextEdit(int start, String removed, int insertedLength) {
+		this.start = start; 
+		this.removed = removed; 
+		this.insertedLength = insertedLength; 
+	}
+	
+	/**
+	 * Create the edit that turns newText back into oldText, 
+	 * only the part between the common beginning and 
+	 * common ending of the two texts is stored 
+	 * @param oldText text before the change
+	 * @param newText text after the change
+	 * @return edit that restores oldText from newText
+	 */
+	public static TextEdit between(String oldText, String newText) {
+		int oldLength = oldText.length(); 
+		int newLength = newText.length(); 
+		int shorter = Math.min(oldLength, newLength); 
+		
+		int prefix = 0; 
+		while(prefix < shorter && oldText.charAt(prefix) == newText.charAt(prefix)) {
+			prefix ++; 
+		}
+		
+		int suffix = 0; 
+		while(suffix < shorter - prefix 
+				&& oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+			suffix ++; 
+		}
+		
+		return new TextEdit(prefix, oldText.substring(prefix, oldLength - suffix), newLength - prefix - suffix); 
+	}
+	
+	/**
+	 * Create the edit that removes text appended to the end of a file
+	 * @param oldLength length of the text before appending
+	 * @param appendedLength length of the text appended 
+	 * @return edit that restores the text before appending
+	 */
+	public static TextEdit append(int oldLength, int appendedLength) {
+		return new TextEdit(oldLength, "", appendedLength); 
+	}
+	
+	/**
+	 * Create the edit that removes text inserted into a file
+	 * @param index location text was inserted at
+	 * @param insertedLength length of the text inserted
+	 * @return edit that restores the text before inserting
+	 */
+	public static TextEdit insert(int index, int insertedLength) {
+		return new TextEdit(index, "", insertedLength); 
+	}
+	
+	/**
+	 * Create the edit that puts back text deleted from a file
+	 * @param start index the deleted text began at
+	 * @param deleted text that was deleted 
+	 * @return edit that restores the text before deleting
+	 */
+	public static TextEdit delete(int start, String deleted) {
+		return new TextEdit(start, deleted, 0); 
+	}
+	
+	/**
+	 * Apply the edit to a text
+	 * @param text text to change 
+	 * @return text with the edit applied
+	 */
+	public Rope apply(Rope text) {
+		return text.replace(start, start + insertedLength, removed); 
+	}
+	
+	/**
+	 * Get the edit that undoes this one once it has been applied
+	 * @param text text before this edit is applied
+	 * @return edit reversing this one 
+	 */
+	public TextEdit inverse(Rope text) {
+		return new TextEdit(start, text.subSequence(start, start + insertedLength).toString(), removed.length()); 
+	}
+	
+	/**
+	 * Approximate amount of memory held by the edit, 
+	 * counting two bytes per character of stored text
+	 * @return bytes used by edit
+	 */
+	public long bytes() {
+		return OBJECT_BYTES + 2L * removed.length(); 
+	}
+	
+	/**
+	 * Return a description of the edit 
+	 */
+	public String toString() {
+		return "[" + start + ", " + (start + insertedLength) + ") -> \"" + removed + "\""; 
+	}
+}
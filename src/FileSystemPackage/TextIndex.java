@@ -0,0 +1,563 @@
+package FileSystemPackage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index of the words in the files of a tree, for finding the files
+ * holding a set of words without reading every file.
+ *
+ * A term is a run of letters and digits, in lower case, of at most
+ * MAX_TERM_LENGTH characters; longer runs are not indexed. Each file indexed
+ * gets an int id, and each term a PostingList of the ids of files holding it.
+ * The index also counts how often each term is in each file, so when a file
+ * changes only the words around the changed range are read again: their old
+ * counts are taken away, the new ones added, and a posting is only added or
+ * removed when a term appears in or vanishes from the file.
+ *
+ * Files call update while holding their own lock, and the index is guarded
+ * by one read write lock, always taken after a file's lock.
+ * @author fiona
+ *
+ */
+public class TextIndex {
+	public static final int MAX_TERM_LENGTH = 64;
+
+	HashMap<String, PostingList> postings;
+	File[] files;
+	TermCounts[] counts;
+	int nextId;
+	int[] freeIds;
+	int freeCount;
+	int indexed;
+	ArrayList<String> emptied;
+	ReentrantReadWriteLock lock;
+
+	/**
+	 * Create an empty index
+	 */
+	public TextIndex() {
+		postings = new HashMap<String, PostingList>();
+		files = new File[64];
+		counts = new TermCounts[64];
+		nextId = 0;
+		freeIds = new int[16];
+		freeCount = 0;
+		indexed = 0;
+		emptied = new ArrayList<String>();
+		lock = new ReentrantReadWriteLock();
+	}
+
+	/**
+	 * Return true if a character is part of a term
+	 * @param c character
+	 * @return true for letters and digits
+	 */
+	static boolean isTermChar(char c) {
+		return Character.isLetterOrDigit(c);
+	}
+
+	/**
+	 * Get amount of files indexed
+	 * @return indexed files
+	 */
+	public int files() {
+		lock.readLock().lock();
+		try {
+			return indexed;
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get amount of different terms indexed
+	 * @return indexed terms
+	 */
+	public int terms() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Return true if a file is in this index
+	 * @param file file to look for
+	 * @return true if indexed
+	 */
+	private boolean holds(File file) {
+		int id = file.textId;
+		return id >= 0 && id < nextId && files[id] == file;
+	}
+
+	/**
+	 * Add a file and its text to the index, if it is not already in it.
+	 * A file whose text is still only in a snapshot is read
+	 * @param file file to add
+	 */
+	public void add(File file) {
+		synchronized(file) {
+			CharSequence text = file.getTextSequence();
+			lock.writeLock().lock();
+			try {
+				if(holds(file)) {
+					return;
+				}
+				int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+				if(id == files.length) {
+					files = Arrays.copyOf(files, id * 2);
+					counts = Arrays.copyOf(counts, id * 2);
+				}
+				files[id] = file;
+				counts[id] = new TermCounts();
+				file.textId = id;
+				indexed ++;
+				change(id, text, 0, text.length(), 1, false, false);
+			}finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Take a file and its terms out of the index
+	 * @param file file to remove
+	 */
+	public void remove(File file) {
+		synchronized(file) {
+			lock.writeLock().lock();
+			try {
+				if(!holds(file)) {
+					return;
+				}
+				int id = file.textId;
+				TermCounts terms = counts[id];
+				for(int i = 0; i < terms.keys.length; i++) {
+					if(terms.keys[i] != null) {
+						PostingList list = postings.get(terms.keys[i]);
+						list.remove(id);
+						if(list.size() == 0) {
+							postings.remove(terms.keys[i]);
+						}
+					}
+				}
+				files[id] = null;
+				counts[id] = null;
+				file.textId = -1;
+				indexed --;
+				if(freeCount == freeIds.length) {
+					freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+				}
+				freeIds[freeCount++] = id;
+			}finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Add the files of a folder
+	 * @param folder folder whose files are added
+	 */
+	public void addFolder(Folder folder) {
+		Iterator<File> iterator = folder.getFileIterator();
+		while(iterator.hasNext()) {
+			add(iterator.next());
+		}
+	}
+
+	/**
+	 * Remove the files of a folder
+	 * @param folder folder whose files are removed
+	 */
+	public void removeFolder(Folder folder) {
+		Iterator<File> iterator = folder.getFileIterator();
+		while(iterator.hasNext()) {
+			remove(iterator.next());
+		}
+	}
+
+	/**
+	 * Add the files of a folder and every folder below it
+	 * @param node top of subtree
+	 */
+	public void addSubtree(FolderTreeNode node) {
+		TreeTraversal.preOrder(node, FolderTreeNode::getIterable, next -> {
+			addFolder(next.getValue());
+			return false;
+		});
+	}
+
+	/**
+	 * Remove the files of a folder and every folder below it
+	 * @param node top of subtree
+	 */
+	public void removeSubtree(FolderTreeNode node) {
+		TreeTraversal.preOrder(node, FolderTreeNode::getIterable, next -> {
+			removeFolder(next.getValue());
+			return false;
+		});
+	}
+
+	/**
+	 * Update the terms of a file after part of its text was replaced.
+	 * The range before..oldEnd of the old text became start..newEnd of the
+	 * new text; only the terms touching that range are read again.
+	 * Called while holding the file's lock
+	 * @param file file that changed
+	 * @param before text before the change
+	 * @param after text after the change
+	 * @param start index the changed range begins at in both texts
+	 * @param oldEnd index after the changed range in the old text
+	 * @param newEnd index after the changed range in the new text
+	 */
+	void update(File file, CharSequence before, CharSequence after, int start, int oldEnd, int newEnd) {
+		lock.writeLock().lock();
+		try {
+			if(!holds(file)) {
+				return;
+			}
+			//the text before start and after the ends is the same in both,
+			//so the range grows by the same amount in both to whole terms
+			int left = start;
+			while(left > 0 && start - left <= MAX_TERM_LENGTH && isTermChar(before.charAt(left - 1))) {
+				left --;
+			}
+			boolean longFirst = start - left > MAX_TERM_LENGTH;
+			if(longFirst) {
+				left = start;
+			}
+			int grow = 0;
+			while(newEnd + grow < after.length() && grow <= MAX_TERM_LENGTH && isTermChar(after.charAt(newEnd + grow))) {
+				grow ++;
+			}
+			boolean longLast = grow > MAX_TERM_LENGTH;
+			if(longLast) {
+				grow = 0;
+			}
+
+			int id = file.textId;
+			TermCounts terms = counts[id];
+			emptied.clear();
+			change(id, before, left, oldEnd + grow, -1, longFirst, longLast);
+			change(id, after, left, newEnd + grow, 1, longFirst, longLast);
+			for(String term: emptied) {
+				if(terms.get(term) == 0) {
+					terms.remove(term);
+					PostingList list = postings.get(term);
+					list.remove(id);
+					if(list.size() == 0) {
+						postings.remove(term);
+					}
+				}
+			}
+			emptied.clear();
+		}finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Count the terms of part of a text up or down for a file.
+	 * A term counted up for the first time is added to its posting list;
+	 * terms counted down to 0 are noted in emptied.
+	 * Called while holding the write lock
+	 * @param id id of file
+	 * @param text text holding the terms
+	 * @param from index to read from, at the start of a term or between terms
+	 * @param to index to read to, at the end of a term or between terms
+	 * @param amount 1 to count up, -1 to count down
+	 * @param skipFirst true if a term at from is too long to index
+	 * @param skipLast true if a term ending at to is too long to index
+	 */
+	private void change(int id, CharSequence text, int from, int to, int amount, boolean skipFirst, boolean skipLast) {
+		if(from >= to) {
+			return;
+		}
+		String part = text.subSequence(from, to).toString();
+		TermCounts terms = counts[id];
+		StringBuilder term = new StringBuilder();
+		int i = 0;
+		int length = part.length();
+		while(i < length) {
+			if(!isTermChar(part.charAt(i))) {
+				i ++;
+				continue;
+			}
+			int begin = i;
+			while(i < length && isTermChar(part.charAt(i))) {
+				i ++;
+			}
+			if(i - begin > MAX_TERM_LENGTH || (skipFirst && begin == 0) || (skipLast && i == length)) {
+				continue;
+			}
+			term.setLength(0);
+			for(int c = begin; c < i; c++) {
+				term.append(Character.toLowerCase(part.charAt(c)));
+			}
+			String key = term.toString();
+			int was = terms.add(key, amount);
+			if(amount > 0 && was == -1) {
+				PostingList list = postings.get(key);
+				if(list == null) {
+					list = new PostingList();
+					postings.put(key, list);
+				}
+				list.add(id);
+			}else if(amount < 0 && was == 1) {
+				emptied.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Split a query into lower case terms the way file text is split
+	 * @param query text to split
+	 * @return terms of query, may be empty
+	 */
+	public static ArrayList<String> terms(String query) {
+		ArrayList<String> terms = new ArrayList<String>();
+		int i = 0;
+		while(i < query.length()) {
+			if(!isTermChar(query.charAt(i))) {
+				i ++;
+				continue;
+			}
+			int begin = i;
+			while(i < query.length() && isTermChar(query.charAt(i))) {
+				i ++;
+			}
+			terms.add(query.substring(begin, i).toLowerCase());
+		}
+		return terms;
+	}
+
+	/**
+	 * Find the files matching a query. Words are joined by AND unless
+	 * separated by OR, which joins groups of AND'ed words:
+	 * "a b OR c" finds files holding both a and b, or holding c.
+	 * A word holding other characters is split into terms that must all be found
+	 * @param query words to find
+	 * @return files matching, in the order they were indexed
+	 */
+	public ArrayList<File> search(String query) {
+		ArrayList<ArrayList<String>> groups = new ArrayList<ArrayList<String>>();
+		ArrayList<String> group = new ArrayList<String>();
+		for(String word: query.trim().split("\\s+")) {
+			if(word.equals("OR")) {
+				groups.add(group);
+				group = new ArrayList<String>();
+			}else if(!word.equals("AND")) {
+				group.addAll(terms(word));
+			}
+		}
+		groups.add(group);
+
+		ArrayList<File> found = new ArrayList<File>();
+		lock.readLock().lock();
+		try {
+			int[] ids = new int[0];
+			for(ArrayList<String> terms: groups) {
+				if(!terms.isEmpty()) {
+					ids = union(ids, matchAll(terms));
+				}
+			}
+			found.ensureCapacity(ids.length);
+			for(int id: ids) {
+				found.add(files[id]);
+			}
+		}finally {
+			lock.readLock().unlock();
+		}
+		return found;
+	}
+
+	/**
+	 * Find the ids of files holding every one of a list of terms,
+	 * starting from the term with the fewest files
+	 * @param terms terms to find
+	 * @return sorted file ids
+	 */
+	private int[] matchAll(ArrayList<String> terms) {
+		PostingList[] lists = new PostingList[terms.size()];
+		for(int i = 0; i < lists.length; i++) {
+			lists[i] = postings.get(terms.get(i));
+			if(lists[i] == null) {
+				return new int[0];
+			}
+		}
+		Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+		int[] ids = lists[0].toArray();
+		for(int i = 1; i < lists.length && ids.length > 0; i++) {
+			ids = intersect(ids, lists[i].toArray());
+		}
+		return ids;
+	}
+
+	/**
+	 * Get the ids in both of two sorted arrays, jumping ahead in the
+	 * longer array with a galloping search when it is much longer
+	 * @param small sorted ids, the shorter array
+	 * @param large sorted ids
+	 * @return sorted ids in both
+	 */
+	static int[] intersect(int[] small, int[] large) {
+		int[] both = new int[small.length];
+		int size = 0;
+		int low = 0;
+		for(int i = 0; i < small.length && low < large.length; i++) {
+			int id = small[i];
+			int step = 1;
+			int high = low;
+			while(high < large.length && large[high] < id) {
+				low = high + 1;
+				high += step;
+				step <<= 1;
+			}
+			int index = Arrays.binarySearch(large, low, Math.min(high + 1, large.length), id);
+			if(index >= 0) {
+				both[size++] = id;
+				low = index + 1;
+			}else {
+				low = -index - 1;
+			}
+		}
+		return Arrays.copyOf(both, size);
+	}
+
+	/**
+	 * Get the ids in either of two sorted arrays
+	 * @param first sorted ids
+	 * @param second sorted ids
+	 * @return sorted ids in either, each once
+	 */
+	static int[] union(int[] first, int[] second) {
+		if(first.length == 0) {
+			return second;
+		}
+		int[] either = new int[first.length + second.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while(i < first.length || j < second.length) {
+			if(j == second.length || (i < first.length && first[i] < second[j])) {
+				either[size++] = first[i++];
+			}else if(i == first.length || second[j] < first[i]) {
+				either[size++] = second[j++];
+			}else {
+				either[size++] = first[i++];
+				j ++;
+			}
+		}
+		return Arrays.copyOf(either, size);
+	}
+
+	/**
+	 * How often each term is in one file, as an open addressing table
+	 * of terms and counts, so no count is boxed
+	 */
+	private static class TermCounts {
+		String[] keys = new String[8];
+		int[] values = new int[8];
+		int size = 0;
+
+		/**
+		 * Get the slot a term is in, or the empty slot it would go in
+		 * @param key term
+		 * @return slot index
+		 */
+		private int slot(String key) {
+			int mask = keys.length - 1;
+			int hash = key.hashCode() * 0x9E3779B9;
+			int i = (hash ^ hash >>> 16) & mask;
+			while(keys[i] != null && !keys[i].equals(key)) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		/**
+		 * Get the count of a term
+		 * @param key term
+		 * @return count, 0 if not counted
+		 */
+		int get(String key) {
+			int i = slot(key);
+			return keys[i] == null ? 0 : values[i];
+		}
+
+		/**
+		 * Add to the count of a term, keeping terms counted down to 0
+		 * until they are removed
+		 * @param key term
+		 * @param amount amount to add
+		 * @return count before adding, -1 if the term was not in the table
+		 */
+		int add(String key, int amount) {
+			int i = slot(key);
+			if(keys[i] == null) {
+				if(amount <= 0) {
+					return 0;
+				}
+				keys[i] = key;
+				values[i] = amount;
+				size ++;
+				if(size * 4 > keys.length * 3) {
+					grow();
+				}
+				return -1;
+			}
+			int was = values[i];
+			values[i] = was + amount;
+			return was;
+		}
+
+		/**
+		 * Take a term out of the table, moving later terms of its run back
+		 * so every term stays reachable from its first slot
+		 * @param key term
+		 */
+		void remove(String key) {
+			int i = slot(key);
+			if(keys[i] == null) {
+				return;
+			}
+			int mask = keys.length - 1;
+			keys[i] = null;
+			size --;
+			int next = (i + 1) & mask;
+			while(keys[next] != null) {
+				String moved = keys[next];
+				int value = values[next];
+				keys[next] = null;
+				int to = slot(moved);
+				keys[to] = moved;
+				values[to] = value;
+				next = (next + 1) & mask;
+			}
+		}
+
+		/**
+		 * Double the table
+		 */
+		private void grow() {
+			String[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new String[oldKeys.length * 2];
+			values = new int[oldKeys.length * 2];
+			for(int i = 0; i < oldKeys.length; i++) {
+				if(oldKeys[i] != null) {
+					int to = slot(oldKeys[i]);
+					keys[to] = oldKeys[i];
+					values[to] = oldValues[i];
+				}
+			}
+		}
+	}
+}
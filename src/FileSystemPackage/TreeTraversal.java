@@ -0,0 +1,80 @@
+package FileSystemPackage;
+
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Walks every node below a tree node without recursion,
+ * keeping the path from the start node in an explicit stack
+ * so deep trees can not overflow the call stack.
+ * A visitor returns true to stop the walk early.
+ * @author fiona
+ *
+ */
+public class TreeTraversal {
+
+	/**
+	 * Visit a node and every node below it, each node before its children.
+	 * Children are visited in the order the iterator gives them.
+	 * @param <N> type of tree node
+	 * @param start node to start at
+	 * @param children gives an iterator of the children of a node
+	 * @param visitor called on every node, returns true to stop
+	 * @return node the visitor stopped at, null if every node was visited
+	 */
+	public static <N> N preOrder(N start, Function<N, Iterator<N>> children, Predicate<N> visitor) {
+		if(visitor.test(start)) {
+			return start;
+		}
+		ArrayStack<Iterator<N>> path = new ArrayStack<Iterator<N>>();
+		path.push(children.apply(start));
+		while(!path.isEmpty()) {
+			Iterator<N> iter = path.peek();
+			if(iter.hasNext()) {
+				N node = iter.next();
+				if(visitor.test(node)) {
+					return node;
+				}
+				Iterator<N> nodeChildren = children.apply(node);
+				if(nodeChildren.hasNext()) {
+					path.push(nodeChildren);
+				}
+			}else {
+				path.pop();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Visit a node and every node below it, each node after its children.
+	 * Children are visited in the order the iterator gives them.
+	 * @param <N> type of tree node
+	 * @param start node to start at
+	 * @param children gives an iterator of the children of a node
+	 * @param visitor called on every node, returns true to stop
+	 * @return node the visitor stopped at, null if every node was visited
+	 */
+	public static <N> N postOrder(N start, Function<N, Iterator<N>> children, Predicate<N> visitor) {
+		ArrayStack<N> nodes = new ArrayStack<N>();
+		ArrayStack<Iterator<N>> path = new ArrayStack<Iterator<N>>();
+		nodes.push(start);
+		path.push(children.apply(start));
+		while(!path.isEmpty()) {
+			Iterator<N> iter = path.peek();
+			if(iter.hasNext()) {
+				N node = iter.next();
+				nodes.push(node);
+				path.push(children.apply(node));
+			}else {
+				path.pop();
+				N node = nodes.pop();
+				if(visitor.test(node)) {
+					return node;
+				}
+			}
+		}
+		return null;
+	}
+}
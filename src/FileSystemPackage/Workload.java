@@ -0,0 +1,368 @@
+package FileSystemPackage;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates streams of inputs for the command line that look like a user at work:
+ * building folders up to a fanout and depth, moving around them with cd, par
+ * and back, listing with ll, making files and editing them with add and undo.
+ *
+ * The generator keeps its own model of the tree, the selected folder and the
+ * command history, so the inputs it writes name folders and files that exist
+ * and back only repeats commands that can safely run again.
+ * The same seed and settings always give the same stream.
+ * @author fiona
+ *
+ */
+public class Workload {
+	public static final int DEFAULT_INPUTS = 100000;
+
+	int fanout;
+	int depth;
+	int filesPerFolder;
+	int lineLength;
+	int addsPerEdit;
+	double editRatio;
+	Random random;
+
+	ModelFolder root;
+	ModelFolder selected;
+	ArrayList<ModelFolder> allFolders;
+	ArrayList<String> history;
+	int made;
+	String line;
+
+	/**
+	 * Create a generator
+	 * @param fanout most child folders made in a folder
+	 * @param depth most levels of folders below the root
+	 * @param filesPerFolder most files made in a folder
+	 * @param lineLength characters in each line added to a file
+	 * @param addsPerEdit average lines added each time a file is edited
+	 * @param editRatio share of top level inputs that start editing a file, 0 to 1
+	 * @param seed seed of random choices
+	 */
+	public Workload(int fanout, int depth, int filesPerFolder, int lineLength, int addsPerEdit, double editRatio, long seed) {
+		this.fanout = Math.max(1, fanout);
+		this.depth = Math.max(1, depth);
+		this.filesPerFolder = Math.max(1, filesPerFolder);
+		this.lineLength = Math.max(1, lineLength);
+		this.addsPerEdit = Math.max(1, addsPerEdit);
+		this.editRatio = editRatio;
+		random = new Random(seed);
+		root = new ModelFolder(null, "root");
+		selected = root;
+		allFolders = new ArrayList<ModelFolder>();
+		allFolders.add(root);
+		history = new ArrayList<String>();
+		made = 0;
+		StringBuilder builder = new StringBuilder(this.lineLength);
+		for(int i = 0; i < this.lineLength; i++) {
+			builder.append((char) ('a' + i % 26));
+		}
+		line = builder.toString();
+	}
+
+	/**
+	 * Create a generator with typical settings
+	 * @param seed seed of random choices
+	 */
+	public Workload(long seed) {
+		this(8, 4, 4, 40, 8, 0.1, seed);
+	}
+
+	/**
+	 * Write a given amount of inputs, one per line.
+	 * An edit that is still open when the amount is reached is closed,
+	 * so the stream may run a few inputs over
+	 * @param output where inputs are written
+	 * @param inputs amount of inputs to write
+	 * @throws IOException if output can not be written
+	 */
+	public void write(Writer output, int inputs) throws IOException {
+		int written = 0;
+		while(written < inputs) {
+			written += step(output);
+		}
+	}
+
+	/**
+	 * Write the next top level input, or a whole edit of a file
+	 * @param output where inputs are written
+	 * @return amount of inputs written
+	 * @throws IOException if output can not be written
+	 */
+	private int step(Writer output) throws IOException {
+		if(random.nextDouble() < editRatio) {
+			return edit(output);
+		}
+		int choice = random.nextInt(100);
+		if(choice < 30) {
+			//go down, or build a child folder to go down to
+			if(selected.depth < depth) {
+				if(selected.children.isEmpty() || (selected.children.size() < fanout && random.nextInt(4) == 0)) {
+					return command(output, "mkdir " + newName("d"));
+				}
+				return command(output, "cd " + pick(selected.children).name);
+			}
+			return command(output, "par");
+		}else if(choice < 45) {
+			return command(output, selected.parent != null ? "par" : "ll");
+		}else if(choice < 55) {
+			return command(output, "cd " + pick(allFolders).path());
+		}else if(choice < 80) {
+			return command(output, "ll");
+		}else if(choice < 90) {
+			if(selected.files.size() < filesPerFolder) {
+				return command(output, "mkfil " + newName("f"));
+			}
+			return command(output, "ll");
+		}else {
+			return back(output);
+		}
+	}
+
+	/**
+	 * Write a command, apply it to the model and add it to the history
+	 * @param output where inputs are written
+	 * @param input command to write
+	 * @return 1, the amount of inputs written
+	 * @throws IOException if output can not be written
+	 */
+	private int command(Writer output, String input) throws IOException {
+		output.write(input);
+		output.write('\n');
+		history.add(input);
+		apply(input);
+		return 1;
+	}
+
+	/**
+	 * Change the model as the command line does for an input
+	 * @param input command run
+	 */
+	private void apply(String input) {
+		if(input.equals("par")) {
+			if(selected.parent != null) {
+				selected = selected.parent;
+			}
+		}else if(input.startsWith("cd /")) {
+			selected = find(input.substring(3));
+		}else if(input.startsWith("cd ")) {
+			String name = input.substring(3);
+			for(ModelFolder child: selected.children) {
+				if(child.name.equals(name)) {
+					selected = child;
+				}
+			}
+		}else if(input.startsWith("mkdir ")) {
+			ModelFolder child = new ModelFolder(selected, input.substring(6));
+			selected.children.add(child);
+			allFolders.add(child);
+		}else if(input.startsWith("mkfil ")) {
+			selected.files.add(input.substring(6));
+		}
+	}
+
+	/**
+	 * Write a back command that repeats a recent cd, par or ll,
+	 * or an ll if there is none
+	 * @param output where inputs are written
+	 * @return 1, the amount of inputs written
+	 * @throws IOException if output can not be written
+	 */
+	private int back(Writer output) throws IOException {
+		int lines = 1 + random.nextInt(4);
+		if(lines > history.size()) {
+			return command(output, "ll");
+		}
+		String repeated = history.get(history.size() - lines);
+		if(!(repeated.startsWith("cd /") || repeated.equals("par") || repeated.equals("ll"))) {
+			return command(output, "ll");
+		}
+		String input = "back " + lines;
+		output.write(input);
+		output.write('\n');
+		//back drops itself and the lines before the repeated one, then runs it again
+		for(int i = 0; i < lines; i++) {
+			history.remove(history.size() - 1);
+		}
+		history.add(repeated);
+		apply(repeated);
+		return 1;
+	}
+
+	/**
+	 * Write an edit of a file in the selected folder, making one first if there is none:
+	 * mostly adding lines, now and then undoing or redoing, then leaving the editor
+	 * @param output where inputs are written
+	 * @return amount of inputs written
+	 * @throws IOException if output can not be written
+	 */
+	private int edit(Writer output) throws IOException {
+		int written = 0;
+		if(selected.files.isEmpty()) {
+			written += command(output, "mkfil " + newName("f"));
+		}
+		written += command(output, "edit " + pick(selected.files));
+		int changes = 1 + random.nextInt(2 * addsPerEdit);
+		for(int i = 0; i < changes; i++) {
+			int choice = random.nextInt(10);
+			if(choice < 7) {
+				output.write("add ");
+				output.write(line);
+			}else if(choice < 9) {
+				output.write("undo");
+			}else {
+				output.write("redo");
+			}
+			output.write('\n');
+			written ++;
+		}
+		output.write("exit\n");
+		return written + 1;
+	}
+
+	/**
+	 * Make a name not used before
+	 * @param prefix start of name
+	 * @return new name
+	 */
+	private String newName(String prefix) {
+		return prefix + (made ++);
+	}
+
+	/**
+	 * Pick a random entry of a list
+	 * @param <T> type of entries
+	 * @param list list to pick from, not empty
+	 * @return entry picked
+	 */
+	private <T> T pick(ArrayList<T> list) {
+		return list.get(random.nextInt(list.size()));
+	}
+
+	/**
+	 * Find the model folder of an absolute path
+	 * @param path path starting with "/"
+	 * @return folder, the root if the path is only "/"
+	 */
+	private ModelFolder find(String path) {
+		ModelFolder folder = root;
+		for(String name: path.split("/")) {
+			for(ModelFolder child: folder.children) {
+				if(child.name.equals(name)) {
+					folder = child;
+					break;
+				}
+			}
+		}
+		return folder;
+	}
+
+	/**
+	 * Read generator settings from command line arguments,
+	 * using the typical setting for any not given
+	 * @param args -fanout, -depth, -files, -line, -adds, -edit and -seed, each followed by a value
+	 * @return generator
+	 */
+	public static Workload fromArgs(String[] args) {
+		int fanout = 8, depth = 4, files = 4, lineLength = 40, adds = 8;
+		double edit = 0.1;
+		long seed = 1;
+		for(int i = 0; i + 1 < args.length; i++) {
+			switch(args[i]) {
+			case "-fanout":
+				fanout = Integer.parseInt(args[++i]);
+				break;
+			case "-depth":
+				depth = Integer.parseInt(args[++i]);
+				break;
+			case "-files":
+				files = Integer.parseInt(args[++i]);
+				break;
+			case "-line":
+				lineLength = Integer.parseInt(args[++i]);
+				break;
+			case "-adds":
+				adds = Integer.parseInt(args[++i]);
+				break;
+			case "-edit":
+				edit = Double.parseDouble(args[++i]);
+				break;
+			case "-seed":
+				seed = Long.parseLong(args[++i]);
+				break;
+			default:
+				break;
+			}
+		}
+		return new Workload(fanout, depth, files, lineLength, adds, edit, seed);
+	}
+
+	/**
+	 * Write a generated stream of inputs to a file or standard output
+	 * @param args generator settings as read by fromArgs, -n and amount of inputs,
+	 * -o and output file
+	 * @throws IOException if output can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int inputs = DEFAULT_INPUTS;
+		String file = null;
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-n")) {
+				inputs = Integer.parseInt(args[++i]);
+			}else if(args[i].equals("-o")) {
+				file = args[++i];
+			}
+		}
+		Writer output = new BufferedWriter(file != null ? new FileWriter(file) : new OutputStreamWriter(System.out));
+		fromArgs(args).write(output, inputs);
+		output.flush();
+		if(file != null) {
+			output.close();
+		}
+	}
+
+	/**
+	 * What the generator knows of a folder: its name, place and contents
+	 */
+	private static class ModelFolder {
+		ModelFolder parent;
+		String name;
+		int depth;
+		ArrayList<ModelFolder> children;
+		ArrayList<String> files;
+
+		/**
+		 * Create a folder in the model
+		 * @param parent parent folder, null for the root
+		 * @param name name of folder
+		 */
+		ModelFolder(ModelFolder parent, String name) {
+			this.parent = parent;
+			this.name = name;
+			depth = parent == null ? 0 : parent.depth + 1;
+			children = new ArrayList<ModelFolder>();
+			files = new ArrayList<String>();
+		}
+
+		/**
+		 * Get the absolute path of the folder
+		 * @return path starting with "/"
+		 */
+		String path() {
+			if(parent == null) {
+				return "/";
+			}
+			String parentPath = parent.path();
+			return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package FileSystemPackage;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Runs streams of inputs through command line sessions, timing every input,
+ * and prints the inputs per second and the 50th, 99th and 99.9th percentile
+ * time of each kind of input.
+ *
+ * Inputs come from script files, such as sessions recorded with -r or streams
+ * written by Workload, or are generated by Workload when no file is given.
+ * Top level inputs are grouped by command, editor inputs by editor command
+ * with a "*" before it, and inputs that are not commands as "other".
+ * The whole stream runs once on a new tree for each warm up pass before
+ * the timed pass, so the times are of compiled code.
+ * @author fiona
+ *
+ */
+public class WorkloadReplay {
+	public static final int DEFAULT_WARMUPS = 1;
+
+	HashMap<String, Latencies> latencies;
+	long inputs;
+	long nanos;
+
+	/**
+	 * Create a replay with no times yet
+	 */
+	public WorkloadReplay() {
+		latencies = new HashMap<String, Latencies>();
+		inputs = 0;
+		nanos = 0;
+	}
+
+	/**
+	 * Run a stream of inputs through a new session on a tree,
+	 * until the stream ends or the session exits
+	 * @param tree folder tree the session works on
+	 * @param script inputs, one per line
+	 * @param timed true to keep the time of each input
+	 * @throws IOException if the script can not be read
+	 */
+	public void replay(FolderTree tree, Reader script, boolean timed) throws IOException {
+		BufferedReader lines = new BufferedReader(script);
+		CommandLine session = new CommandLine(tree, Writer.nullWriter());
+		session.start();
+		String input;
+		while((input = lines.readLine()) != null) {
+			String kind = kindOf(session, input);
+			long start = System.nanoTime();
+			boolean active = session.handleInput(input);
+			long time = System.nanoTime() - start;
+			if(timed) {
+				Latencies times = latencies.get(kind);
+				if(times == null) {
+					times = new Latencies();
+					latencies.put(kind, times);
+				}
+				times.add(time);
+				inputs ++;
+				nanos += time;
+			}
+			if(!active) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Get the kind an input is grouped under
+	 * @param session session the input is about to run in
+	 * @param input line of input
+	 * @return command of input, "*" and the editor command while editing,
+	 * "*paste" for pasted lines, or "other"
+	 */
+	private static String kindOf(CommandLine session, String input) {
+		int space = input.indexOf(' ');
+		String command = space < 0 ? input : input.substring(0, space);
+		if(session.isPasting()) {
+			return "*paste";
+		}
+		if(session.isEditing()) {
+			return "*" + command;
+		}
+		return session.commands.containsKey(command) ? command : "other";
+	}
+
+	/**
+	 * Print inputs per second and the percentiles of each kind of input,
+	 * most frequent kind first
+	 */
+	public void report() {
+		System.out.println(inputs + " inputs in " + nanos / 1000000 + " ms of command time, "
+				+ (long) (inputs * 1e9 / Math.max(1, nanos)) + " inputs per second");
+		System.out.println(String.format("%-10s %10s %10s %10s %10s %10s", "input", "count", "p50 us", "p99 us", "p999 us", "max us"));
+		ArrayList<String> kinds = new ArrayList<String>(latencies.keySet());
+		kinds.sort((a, b) -> Integer.compare(latencies.get(b).size, latencies.get(a).size));
+		for(String kind: kinds) {
+			Latencies times = latencies.get(kind);
+			times.sort();
+			System.out.println(String.format("%-10s %10d %10.1f %10.1f %10.1f %10.1f", kind, times.size,
+					times.percentile(0.5) / 1000.0, times.percentile(0.99) / 1000.0,
+					times.percentile(0.999) / 1000.0, times.percentile(1) / 1000.0));
+		}
+	}
+
+	/**
+	 * Replay scripts, or a generated stream, and print the times.
+	 * Scripts given together run one after another on the same tree,
+	 * each in its own session
+	 * @param args script files, or Workload settings and -n with amount of inputs;
+	 * -w and amount of warm up passes, -c for copy-on-write child lists
+	 * @throws IOException if a script can not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		int warmups = DEFAULT_WARMUPS;
+		int generated = Workload.DEFAULT_INPUTS;
+		ArrayList<String> files = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-c")) {
+				ChildListFactory.setKind(ChildListFactory.Kind.COPY_ON_WRITE);
+			}else if(args[i].equals("-w") && i + 1 < args.length) {
+				warmups = Integer.parseInt(args[++i]);
+			}else if(args[i].equals("-n") && i + 1 < args.length) {
+				generated = Integer.parseInt(args[++i]);
+			}else if(args[i].startsWith("-")) {
+				//a Workload setting and its value
+				i ++;
+			}else {
+				files.add(args[i]);
+			}
+		}
+
+		String stream = null;
+		if(files.isEmpty()) {
+			StringWriter writer = new StringWriter();
+			Workload.fromArgs(args).write(writer, generated);
+			stream = writer.toString();
+		}
+
+		WorkloadReplay replay = null;
+		for(int pass = 0; pass <= warmups; pass++) {
+			replay = new WorkloadReplay();
+			FolderTree tree = new FolderTree(new FolderTreeNode(new Folder("root")));
+			boolean timed = pass == warmups;
+			if(stream != null) {
+				replay.replay(tree, new StringReader(stream), timed);
+			}
+			for(String file: files) {
+				try(Reader script = new FileReader(file)) {
+					replay.replay(tree, script, timed);
+				}
+			}
+		}
+		replay.report();
+	}
+
+	/**
+	 * Times of one kind of input in nanoseconds, in a growing array
+	 */
+	private static class Latencies {
+		long[] times;
+		int size;
+
+		/**
+		 * Create an empty list of times
+		 */
+		Latencies() {
+			times = new long[256];
+			size = 0;
+		}
+
+		/**
+		 * Add a time
+		 * @param time nanoseconds taken
+		 */
+		void add(long time) {
+			if(size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+			}
+			times[size ++] = time;
+		}
+
+		/**
+		 * Sort the times so percentiles can be read
+		 */
+		void sort() {
+			Arrays.sort(times, 0, size);
+		}
+
+		/**
+		 * Get the time a given share of inputs took at most, after sort
+		 * @param share share of inputs, 0 to 1
+		 * @return nanoseconds
+		 */
+		long percentile(double share) {
+			int index = (int) Math.ceil(share * size) - 1;
+			return times[Math.max(0, Math.min(size - 1, index))];
+		}
+	}
+}